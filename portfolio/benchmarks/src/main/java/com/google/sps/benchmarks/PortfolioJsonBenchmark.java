@@ -0,0 +1,115 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.sps.servlets.DataServlet.Comment;
+import com.google.sps.servlets.PortfolioJson;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares writing each of the portfolio's responses with a new {@code Gson}, as the servlets used
+ * to on every request, against writing them with the shared {@code PortfolioJson}. Run it with
+ * {@code -prof gc} to also compare the garbage each makes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortfolioJsonBenchmark {
+  private static final String[] GENRES = {
+    "Afrobeats", "Classical", "Country", "Hip hop", "Jazz", "Pop", "R&B", "Rock"
+  };
+
+  @Param({"10", "100"})
+  public int comments;
+
+  private List<Comment> commentList;
+  private Map<String, Long> genreVotes;
+  private Map<String, String> login;
+  private PortfolioJson json;
+
+  @Setup
+  public void setUp() {
+    commentList = new ArrayList<>(comments);
+    for (int i = 0; i < comments; i++) {
+      commentList.add(new Comment("Visitor " + i, "Comment number " + i + " about the portfolio",
+          1_590_000_000_000L + i));
+    }
+    genreVotes = new HashMap<>();
+    for (int i = 0; i < GENRES.length; i++) {
+      genreVotes.put(GENRES[i], 10L * i + 3);
+    }
+    login = new HashMap<>();
+    login.put("loginStatus", "loggedOut");
+    login.put("url", "/_ah/login?continue=%2Fmusic.html");
+    json = new PortfolioJson();
+  }
+
+  @Benchmark
+  public String commentsWithNewGson() {
+    return new Gson().toJson(commentList);
+  }
+
+  @Benchmark
+  public String commentsWithSharedJson() throws IOException {
+    StringWriter out = new StringWriter();
+    json.writeComments(out, commentList);
+    return out.toString();
+  }
+
+  @Benchmark
+  public String genreVotesWithNewGson() {
+    return new Gson().toJson(genreVotes);
+  }
+
+  @Benchmark
+  public String genreVotesWithSharedJson() throws IOException {
+    StringWriter out = new StringWriter();
+    json.writeGenreVotes(out, genreVotes);
+    return out.toString();
+  }
+
+  @Benchmark
+  public String loginWithNewGson() {
+    return new Gson().toJson(login);
+  }
+
+  @Benchmark
+  public String loginWithSharedJson() throws IOException {
+    StringWriter out = new StringWriter();
+    json.writeLogin(out, login);
+    return out.toString();
+  }
+}
@@ -0,0 +1,44 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sends how often {@code /data} requests were answered from the recent comments kept in memory,
+ * and how long ago those were loaded from Datastore.
+ */
+@WebServlet("/data/stats")
+public class CommentStatsServlet extends HttpServlet {
+
+  private PortfolioJson json;
+  private RecentComments recentComments;
+
+  @Override
+  public void init() {
+    json = PortfolioContextListener.getJson(getServletContext());
+    recentComments = PortfolioContextListener.getRecentComments(getServletContext());
+  }
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("application/json;");
+    json.getGson().toJson(recentComments.getStats(), response.getWriter());
+  }
+}
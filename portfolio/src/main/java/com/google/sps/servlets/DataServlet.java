@@ -14,49 +14,115 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.FetchOptions;
-import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.appengine.api.datastore.QueryResultList;
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
-import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Optional; 
+import java.util.regex.Pattern;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Stores the comments left on the portfolio and sends them back newest first, one page at a time.
+ * Each page is a JSON object holding its {@code comments} and, unless it is the last page, a
+ * {@code cursor} to pass back to get the next one.
+ *
+ * <p>First pages are answered from the {@link RecentComments} kept in memory when they fit. There
+ * is no Datastore cursor for those, so their cursor holds the timestamp and key of the last comment
+ * on the page. Comments are ordered by timestamp and then by key, so the next page starts with the
+ * comments of that millisecond whose keys come after it, and then the older ones. Pages after it
+ * continue the same way, so no comment is skipped when several share a millisecond, and the cursor
+ * stays the same size however many do.
+ */
 @WebServlet("/data")
 public class DataServlet extends HttpServlet {
 
-  class Comment {
-      private String name;
-      private String comment; 
-      private long timestamp;
+  public static final class Comment {
+      // Orders comments the way Datastore returns them: newest first, and those of the same
+      // millisecond by key.
+      static final Comparator<Comment> NEWEST_FIRST =
+          Comparator.comparingLong(Comment::getTimestamp).reversed()
+              .thenComparing(Comment::getKey, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+      private final String name;
+      private final String comment;
+      private final long timestamp;
+      // The Datastore key of the comment, or null if it wasn't read from or stored in Datastore.
+      private final Key key;
 
       public Comment(String name, String comment, long timestamp) {
+          this(name, comment, timestamp, null);
+      }
+
+      Comment(String name, String comment, long timestamp, Key key) {
           this.name = name;
           this.comment = comment; 
           this.timestamp = timestamp;
+          this.key = key;
+      }
+
+      public String getName() {
+          return name;
+      }
+
+      public String getComment() {
+          return comment;
+      }
+
+      public long getTimestamp() {
+          return timestamp;
+      }
+
+      Key getKey() {
+          return key;
+      }
+
+      static Comment fromEntity(Entity entity) {
+          String name = (String) entity.getProperty("name");
+          String text = (String) entity.getProperty("comment");
+          long timestamp = (long) entity.getProperty("timestamp");
+          return new Comment(name, text, timestamp, entity.getKey());
       }
   }
 
-  private List<Comment> comments;
+  // Starts the cursors that continue after a comment, rather than from a Datastore cursor. It can't
+  // be mistaken for one, whose web-safe form has no dots. The timestamp and the key of the comment
+  // follow, separated by a dot.
+  private static final String KEYSET_CURSOR_PREFIX = "t.";
+  private static final String KEYSET_CURSOR_SEPARATOR = ".";
+  private static final Pattern KEYSET_CURSOR_SPLITTER =
+      Pattern.compile(Pattern.quote(KEYSET_CURSOR_SEPARATOR));
 
+  private PortfolioJson json;
+  private RecentComments recentComments;
 
   @Override
-  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+  public void init() {
+    json = PortfolioContextListener.getJson(getServletContext());
+    recentComments = PortfolioContextListener.getRecentComments(getServletContext());
+  }
 
-    comments = new ArrayList<>();
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
 
     int numComments;
 
@@ -68,25 +134,141 @@ public class DataServlet extends HttpServlet {
         numComments = maybeLimit.get();
     }
     
-    Query query = new Query("Comment").addSort("timestamp", SortDirection.DESCENDING);
+    // The first page usually fits in the recent comments kept in memory. The next page then starts
+    // after the oldest comment shown, since there is no Datastore cursor to give.
+    String startCursor = request.getParameter("cursor");
+    boolean firstPage = startCursor == null || startCursor.isEmpty();
+    if (firstPage && numComments <= recentComments.getCapacity()) {
+      List<Comment> comments = recentComments.getNewest(numComments);
+      if (comments == null) {
+        comments = loadRecentComments(recentComments);
+        comments = comments.subList(0, Math.min(numComments, comments.size()));
+      }
 
+      String nextCursor = null;
+      if (numComments > 0 && comments.size() == numComments) {
+        nextCursor = keysetCursor(comments.get(comments.size() - 1));
+      }
+      response.setContentType("application/json;");
+      json.writeCommentPage(response.getWriter(), comments, nextCursor);
+      return;
+    }
+
+    // A cursor from the previous page makes the query start where that page ended, so each page
+    // only reads its own comments however far down the user has scrolled.
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
+    List<Comment> comments = new ArrayList<>();
+    String nextCursor = null;
+    if (!firstPage && startCursor.startsWith(KEYSET_CURSOR_PREFIX)) {
+      long afterTimestamp;
+      Key afterKey = null;
+      try {
+        String[] parts =
+            KEYSET_CURSOR_SPLITTER.split(startCursor.substring(KEYSET_CURSOR_PREFIX.length()), -1);
+        if (parts.length > 2) {
+          throw new IllegalArgumentException("Too many parts in " + startCursor);
+        }
+        afterTimestamp = Long.parseLong(parts[0]);
+        if (parts.length == 2) {
+          afterKey = KeyFactory.stringToKey(parts[1]);
+        }
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The cursor is not valid");
+        return;
+      }
 
-    for (Entity entity : results.asIterable(FetchOptions.Builder.withLimit(numComments))) {
-      String name = (String) entity.getProperty("name");
-      String text = (String) entity.getProperty("comment");
-      long timestamp = (long) entity.getProperty("timestamp");
+      // The comments of the same millisecond that come after the last one shown, then the older
+      // ones. Both queries are served by the built-in index on timestamp.
+      if (afterKey != null && numComments > 0) {
+        Query sameMillisecond = new Query("Comment")
+            .setFilter(CompositeFilterOperator.and(
+                new FilterPredicate("timestamp", FilterOperator.EQUAL, afterTimestamp),
+                new FilterPredicate(
+                    Entity.KEY_RESERVED_PROPERTY, FilterOperator.GREATER_THAN, afterKey)))
+            .addSort(Entity.KEY_RESERVED_PROPERTY, SortDirection.ASCENDING);
+        addComments(datastore.prepare(sameMillisecond)
+            .asIterable(FetchOptions.Builder.withLimit(numComments)), comments);
+      }
+      if (comments.size() < numComments) {
+        Query older = newestCommentsQuery()
+            .setFilter(new FilterPredicate("timestamp", FilterOperator.LESS_THAN, afterTimestamp));
+        addComments(datastore.prepare(older)
+            .asIterable(FetchOptions.Builder.withLimit(numComments - comments.size())), comments);
+      }
 
-      Comment comment = new Comment(name, text, timestamp);
-      comments.add(comment);
-    }
+      // A page shorter than the limit is the last one, so there is no cursor for a next page.
+      if (numComments > 0 && comments.size() == numComments) {
+        nextCursor = keysetCursor(comments.get(comments.size() - 1));
+      }
+    } else {
+      FetchOptions fetchOptions = FetchOptions.Builder.withLimit(numComments);
+      if (!firstPage) {
+        try {
+          fetchOptions.startCursor(Cursor.fromWebSafeString(startCursor));
+        } catch (IllegalArgumentException e) {
+          response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The cursor is not valid");
+          return;
+        }
+      }
+      QueryResultList<Entity> page =
+          datastore.prepare(newestCommentsQuery()).asQueryResultList(fetchOptions);
+      addComments(page, comments);
 
-    String json = convertToJson(comments);
+      // A page shorter than the limit is the last one, so there is no cursor for a next page.
+      if (numComments > 0 && comments.size() == numComments) {
+        nextCursor = page.getCursor().toWebSafeString();
+      }
+    }
 
     // Send the JSON as the response
     response.setContentType("application/json;");
-    response.getWriter().println(json);
+    json.writeCommentPage(response.getWriter(), comments, nextCursor);
+  }
+
+  /**
+   * Reloads {@code recentComments} from Datastore and returns the comments it now holds, newest
+   * first.
+   */
+  static List<Comment> loadRecentComments(RecentComments recentComments) {
+    // One more than fits tells whether the buffer holds every comment.
+    int capacity = recentComments.getCapacity();
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    long readMillis = System.currentTimeMillis();
+    List<Comment> newest = new ArrayList<>(capacity + 1);
+    for (Entity entity : datastore.prepare(newestCommentsQuery())
+        .asIterable(FetchOptions.Builder.withLimit(capacity + 1))) {
+      newest.add(Comment.fromEntity(entity));
+    }
+    boolean complete = newest.size() <= capacity;
+    if (!complete) {
+      newest.remove(capacity);
+    }
+    return recentComments.reload(newest, complete, readMillis);
+  }
+
+  private static void addComments(Iterable<Entity> entities, List<Comment> comments) {
+    for (Entity entity : entities) {
+      comments.add(Comment.fromEntity(entity));
+    }
+  }
+
+  /**
+   * Returns a cursor to the comments after {@code last}: those of the same millisecond with a later
+   * key, and the older ones.
+   */
+  private static String keysetCursor(Comment last) {
+    StringBuilder cursor = new StringBuilder(KEYSET_CURSOR_PREFIX).append(last.getTimestamp());
+    if (last.getKey() != null) {
+      cursor.append(KEYSET_CURSOR_SEPARATOR).append(KeyFactory.keyToString(last.getKey()));
+    }
+    return cursor.toString();
+  }
+
+  private static Query newestCommentsQuery() {
+    // Comments of the same millisecond come by key, so that a page can continue after any of them.
+    return new Query("Comment")
+        .addSort("timestamp", SortDirection.DESCENDING)
+        .addSort(Entity.KEY_RESERVED_PROPERTY, SortDirection.ASCENDING);
   }
 
   @Override
@@ -104,16 +286,11 @@ public class DataServlet extends HttpServlet {
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     datastore.put(commentEntity);
+    recentComments.add(new Comment(name, comment, timestamp, commentEntity.getKey()));
 
     response.sendRedirect("/thanks.html");
   }
 
-  private String convertToJson(List<Comment> comments) {
-    Gson gson = new Gson();
-    String json = gson.toJson(comments);
-    return json;
-  }
-
  /**
    * @return the request parameter, or the default value if the parameter
    *         was not specified by the client
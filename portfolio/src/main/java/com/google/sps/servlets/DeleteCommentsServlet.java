@@ -14,41 +14,152 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Transaction;
 import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
-import com.google.gson.Gson;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Arrays;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for deleting tasks. */
+/**
+ * Servlet responsible for deleting all the comments.
+ *
+ * <p>Comments are found with a keys-only query and deleted in chunks of {@value #CHUNK_SIZE}
+ * keys, so deleting any number of them takes the same memory. A POST deletes them before it
+ * returns. A POST with {@code background=true} instead starts a job on the task queue and returns
+ * its id, and a GET with {@code job=<id>} returns how many comments the job has deleted, whether
+ * it is done and whether it failed.
+ */
 @WebServlet("/delete-data")
 public class DeleteCommentsServlet extends HttpServlet {
 
+  /** The most keys deleted in one Datastore call, which is also Datastore's limit. */
+  static final int CHUNK_SIZE = 500;
+
+  static final String JOB_KIND = "DeleteCommentsJob";
+
+  private PortfolioJson json;
+  private RecentComments recentComments;
+
+  /** How far a run of {@link #deleteComments} got. */
+  static final class Progress {
+    final long deleted;
+    // Where the next run should start, or null if every comment was deleted.
+    final Cursor resumeCursor;
+
+    Progress(long deleted, Cursor resumeCursor) {
+      this.deleted = deleted;
+      this.resumeCursor = resumeCursor;
+    }
+  }
+
   @Override
-  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Comment");
+  public void init() {
+    json = PortfolioContextListener.getJson(getServletContext());
+    recentComments = PortfolioContextListener.getRecentComments(getServletContext());
+  }
 
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-    ArrayList<Key> keys = new ArrayList<Key>();
 
-    for (Entity entity : results.asIterable()) {
-      keys.add(entity.getKey());
+    if ("true".equals(request.getParameter("background"))) {
+      Entity job = new Entity(JOB_KIND);
+      job.setProperty("deleted", 0L);
+      job.setProperty("done", false);
+      job.setProperty("failed", false);
+      // Where the job's next task starts, which is also how a retried task knows it already ran.
+      job.setProperty("cursor", "");
+      job.setProperty("started", System.currentTimeMillis());
+      Key jobKey = datastore.put(job);
+      String jobId = KeyFactory.keyToString(jobKey);
+      QueueFactory.getDefaultQueue().add(TaskOptions.Builder
+          .withUrl(DeleteCommentsWorkerServlet.URL)
+          .param("job", jobId));
+
+      response.setStatus(HttpServletResponse.SC_ACCEPTED);
+      writeProgress(response, jobId, job);
+      return;
     }
 
-    datastore.delete(keys);
+    deleteComments(datastore, null, Integer.MAX_VALUE);
+    recentComments.clear();
+  }
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String jobId = request.getParameter("job");
+    Entity job;
+    try {
+      job = DatastoreServiceFactory.getDatastoreService().get(KeyFactory.stringToKey(jobId));
+    } catch (IllegalArgumentException | NullPointerException | EntityNotFoundException e) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "There is no such job");
+      return;
+    }
+    if (!JOB_KIND.equals(job.getKind())) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "There is no such job");
+      return;
+    }
+    writeProgress(response, jobId, job);
+  }
+
+  private void writeProgress(HttpServletResponse response, String jobId, Entity job)
+      throws IOException {
+    Map<String, Object> progress = new LinkedHashMap<>();
+    progress.put("job", jobId);
+    progress.put("deleted", job.getProperty("deleted"));
+    progress.put("done", job.getProperty("done"));
+    progress.put("failed", job.getProperty("failed"));
+    response.setContentType("application/json;");
+    json.getGson().toJson(progress, response.getWriter());
+  }
+
+  /**
+   * Deletes comments in chunks, stopping after {@code maxChunks} chunks or when there are none
+   * left.
+   *
+   * @param startCursor Where a previous run stopped, or null to start from the first comment.
+   */
+  static Progress deleteComments(DatastoreService datastore, Cursor startCursor, int maxChunks) {
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(CHUNK_SIZE);
+    if (startCursor != null) {
+      fetchOptions.startCursor(startCursor);
+    }
+    QueryResultIterator<Entity> results = datastore
+        .prepare(new Query("Comment").setKeysOnly())
+        .asQueryResultIterator(fetchOptions);
+
+    long deleted = 0;
+    List<Key> keys = new ArrayList<>(CHUNK_SIZE);
+    for (int chunks = 0; chunks < maxChunks; chunks++) {
+      while (keys.size() < CHUNK_SIZE && results.hasNext()) {
+        keys.add(results.next().getKey());
+      }
+      if (keys.isEmpty()) {
+        return new Progress(deleted, null);
+      }
+      datastore.delete(keys);
+      deleted += keys.size();
+      if (keys.size() < CHUNK_SIZE) {
+        return new Progress(deleted, null);
+      }
+      keys.clear();
+    }
+    return new Progress(deleted, results.hasNext() ? results.getCursor() : null);
   }
 }
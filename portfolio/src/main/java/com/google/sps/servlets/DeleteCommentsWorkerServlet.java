@@ -0,0 +1,159 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Runs the background jobs started by {@code DeleteCommentsServlet}. Each task deletes up to
+ * {@value #CHUNKS_PER_TASK} chunks of comments, well within a task's deadline, then records the
+ * progress on the job and queues the next task to carry on from where it stopped, in one
+ * transaction that also moves the job's cursor on. A retried task whose cursor the job has moved
+ * past is dropped, so its comments aren't counted twice.
+ *
+ * <p>Only the task queue may call it: App Engine strips the {@code X-AppEngine-QueueName} header
+ * from requests that come from outside.
+ */
+@WebServlet(DeleteCommentsWorkerServlet.URL)
+public class DeleteCommentsWorkerServlet extends HttpServlet {
+
+  static final String URL = "/delete-data/worker";
+
+  private static final int CHUNKS_PER_TASK = 20;
+
+  private RecentComments recentComments;
+
+  @Override
+  public void init() {
+    recentComments = PortfolioContextListener.getRecentComments(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (request.getHeader("X-AppEngine-QueueName") == null) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    String jobId = request.getParameter("job");
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity job;
+    try {
+      job = datastore.get(KeyFactory.stringToKey(jobId));
+    } catch (IllegalArgumentException | NullPointerException | EntityNotFoundException e) {
+      // Nothing to retry, so the task succeeds.
+      getServletContext().log("Dropping the task of unknown job " + jobId);
+      return;
+    }
+
+    if ((boolean) job.getProperty("done")) {
+      // A retry of a task of a job that has ended, or failed.
+      getServletContext().log("Dropping a task of job " + jobId + ", which has ended");
+      return;
+    }
+
+    // The first task of a job has no cursor.
+    String cursor = request.getParameter("cursor");
+    String taskCursor = cursor == null ? "" : cursor;
+    Cursor startCursor;
+    try {
+      startCursor = cursor == null ? null : Cursor.fromWebSafeString(cursor);
+    } catch (IllegalArgumentException e) {
+      // Retrying can't fix the cursor, so the job stops here, and the retries are dropped.
+      getServletContext().log("Failing job " + jobId + " on a cursor that is not valid", e);
+      updateJob(datastore, job.getKey(), null, (failed, transaction) -> {
+        failed.setProperty("done", true);
+        failed.setProperty("failed", true);
+        failed.setProperty("finished", System.currentTimeMillis());
+      });
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The cursor is not valid");
+      return;
+    }
+    if (!taskCursor.equals(job.getProperty("cursor"))) {
+      // A retry of a task whose progress is already on the job.
+      getServletContext().log("Dropping a task that job " + jobId + " has already moved past");
+      return;
+    }
+
+    DeleteCommentsServlet.Progress progress =
+        DeleteCommentsServlet.deleteComments(datastore, startCursor, CHUNKS_PER_TASK);
+
+    // The progress is added, and the next task queued, only together with moving the job's cursor
+    // on, so a task that is retried after getting here counts nothing twice.
+    boolean recorded = updateJob(datastore, job.getKey(), taskCursor, (updated, transaction) -> {
+      updated.setProperty("deleted", (long) updated.getProperty("deleted") + progress.deleted);
+      if (progress.resumeCursor == null) {
+        updated.setProperty("done", true);
+        updated.setProperty("cursor", null);
+        updated.setProperty("finished", System.currentTimeMillis());
+      } else {
+        String resumeCursor = progress.resumeCursor.toWebSafeString();
+        updated.setProperty("cursor", resumeCursor);
+        QueueFactory.getDefaultQueue().add(transaction, TaskOptions.Builder
+            .withUrl(URL)
+            .param("job", jobId)
+            .param("cursor", resumeCursor));
+      }
+    });
+    if (recorded && progress.resumeCursor == null) {
+      recentComments.clear();
+    }
+  }
+
+  /** Changes a job inside the transaction that saves it. */
+  private interface JobUpdate {
+    void apply(Entity job, Transaction transaction);
+  }
+
+  /**
+   * Applies {@code update} to the job and saves it, in a transaction, if the job is still waiting
+   * for the task that starts at {@code taskCursor}, or in any case if that is null. Returns whether
+   * it was.
+   */
+  private boolean updateJob(
+      DatastoreService datastore, Key jobKey, String taskCursor, JobUpdate update) {
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity job = datastore.get(transaction, jobKey);
+      if (taskCursor != null && !taskCursor.equals(job.getProperty("cursor"))) {
+        return false;
+      }
+      update.apply(job, transaction);
+      datastore.put(transaction, job);
+      transaction.commit();
+      return true;
+    } catch (EntityNotFoundException e) {
+      return false;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+}
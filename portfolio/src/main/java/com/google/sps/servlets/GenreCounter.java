@@ -0,0 +1,352 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Counts the votes for each genre in sharded counters. Each genre's count is split over
+ * {@value #SHARDS} shard entities, and a vote increments a random one of them, so that votes for
+ * the same genre rarely contend for the same entity group. Reading the counts sums the shards,
+ * which costs the same however many votes were cast.
+ *
+ * <p>Besides the shards that votes increment, each genre can have a backfill shard holding the
+ * votes that were cast before the counters existed. It is set rather than incremented, so that the
+ * migration that fills it can be run again safely.
+ *
+ * <p>Votes aggregated in memory by a {@code VoteAggregator} are flushed to shards of their own,
+ * kept in one entity group per slot of a fixed pool of {@value #VOTE_LOG_SLOTS} {@code VoteLog}
+ * entities. Each aggregator leases a slot while it runs, so reading the counts touches at most
+ * {@value #SHARDS} + 1 + {@value #VOTE_LOG_SLOTS} shards per genre however many instances ever
+ * ran. A whole flush is a single transaction, which also records the last write-ahead log segment
+ * it covers, so replaying a flush that already committed doesn't count its votes twice. Since they
+ * share an entity group, an aggregator can read the votes flushed into its slot with an ancestor
+ * query, which unlike the query over every shard always sees the latest flush.
+ */
+final class GenreCounter {
+  private static final String SHARD_KIND = "GenreVoteShard";
+  private static final String LOG_KIND = "VoteLog";
+  private static final int SHARDS = 20;
+  private static final String BACKFILL_SHARD = "backfill";
+
+  /** How many vote logs can hold a slot to flush into at once. */
+  static final int VOTE_LOG_SLOTS = 10;
+  private static final String SLOT_PREFIX = "slot-";
+  // How long a slot stays with a log that stopped flushing before another log may take it over.
+  static final long VOTE_LOG_LEASE_MILLIS = 5 * 60_000;
+
+  // Each attempt picks another shard, so a retry is unlikely to hit the same contention.
+  private static final int MAX_ATTEMPTS = 5;
+
+  private GenreCounter() {}
+
+  /**
+   * Adds {@code delta} votes for {@code genre} to a random shard, in a transaction.
+   *
+   * @throws ConcurrentModificationException If every attempt lost a race with another vote.
+   */
+  static void increment(DatastoreService datastore, String genre, long delta) {
+    ConcurrentModificationException lastFailure = null;
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      Key key = shardKey(genre, Integer.toString(ThreadLocalRandom.current().nextInt(SHARDS)));
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity shard;
+        try {
+          shard = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          shard = newShard(key, genre, 0);
+        }
+        shard.setProperty("count", (long) shard.getProperty("count") + delta);
+        datastore.put(transaction, shard);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        lastFailure = e;
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    throw lastFailure;
+  }
+
+  /**
+   * Sets the number of votes for {@code genre} that were cast before the counters existed.
+   */
+  static void setBackfill(DatastoreService datastore, String genre, long count) {
+    datastore.put(newShard(shardKey(genre, BACKFILL_SHARD), genre, count));
+  }
+
+  /** A slot of the vote log pool, as a log claimed it. */
+  static final class Slot {
+    final String name;
+    // The last segment of the log that was flushed, into this slot or the one it held before, or
+    // -1 if that isn't known.
+    final long lastFlushedSegment;
+
+    Slot(String name, long lastFlushedSegment) {
+      this.name = name;
+      this.lastFlushedSegment = lastFlushedSegment;
+    }
+  }
+
+  /**
+   * Claims a slot of the vote log pool for the aggregator log {@code logId}: the one it held
+   * before if no other log took it over, or else one whose lease ran out. Returns null if every
+   * slot is leased to another log.
+   */
+  static Slot claimSlot(DatastoreService datastore, String logId) {
+    List<Key> slotKeys = new ArrayList<>(VOTE_LOG_SLOTS);
+    for (int i = 0; i < VOTE_LOG_SLOTS; i++) {
+      slotKeys.add(slotKey(SLOT_PREFIX + i));
+    }
+    Map<Key, Entity> slots = datastore.get(slotKeys);
+
+    // A log that lost its slot finds out from the new owner how far it got.
+    long handedOffSegment = -1;
+    for (Entity slot : slots.values()) {
+      if (logId.equals(slot.getProperty("previousOwner"))) {
+        handedOffSegment = (long) slot.getProperty("previousLastFlushedSegment");
+      }
+    }
+    for (Key slotKey : slotKeys) {
+      Entity slot = slots.get(slotKey);
+      if (slot != null && logId.equals(slot.getProperty("owner"))) {
+        Slot claimed = tryClaim(datastore, slotKey, logId, handedOffSegment);
+        if (claimed != null) {
+          return claimed;
+        }
+      }
+    }
+    long now = System.currentTimeMillis();
+    for (Key slotKey : slotKeys) {
+      Entity slot = slots.get(slotKey);
+      if (slot == null || (long) slot.getProperty("leaseExpiresMillis") < now) {
+        Slot claimed = tryClaim(datastore, slotKey, logId, handedOffSegment);
+        if (claimed != null) {
+          return claimed;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static Slot tryClaim(
+      DatastoreService datastore, Key slotKey, String logId, long handedOffSegment) {
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity slot;
+      try {
+        slot = datastore.get(transaction, slotKey);
+      } catch (EntityNotFoundException e) {
+        slot = new Entity(slotKey);
+      }
+      String owner = (String) slot.getProperty("owner");
+      long now = System.currentTimeMillis();
+      if (owner != null && !owner.equals(logId)
+          && (long) slot.getProperty("leaseExpiresMillis") >= now) {
+        return null;
+      }
+
+      if (!logId.equals(owner)) {
+        // The log that loses the slot reads this when it comes back, to replay only what it
+        // hadn't flushed.
+        if (owner != null) {
+          slot.setProperty("previousOwner", owner);
+          slot.setProperty("previousLastFlushedSegment", slot.getProperty("lastFlushedSegment"));
+        }
+        slot.setProperty("owner", logId);
+        slot.setProperty("lastFlushedSegment", -1L);
+      }
+      slot.setProperty("leaseExpiresMillis", now + VOTE_LOG_LEASE_MILLIS);
+      datastore.put(transaction, slot);
+      transaction.commit();
+      return new Slot(slotKey.getName(), logId.equals(owner)
+          ? (long) slot.getProperty("lastFlushedSegment") : handedOffSegment);
+    } catch (ConcurrentModificationException e) {
+      return null;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  /**
+   * Extends the lease of {@code slot} held by the aggregator log {@code logId}, or releases it so
+   * that another log can claim it at once. Returns false if another log has taken it over.
+   */
+  static boolean renewLease(DatastoreService datastore, String slot, String logId, boolean release) {
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity entity = datastore.get(transaction, slotKey(slot));
+      if (!logId.equals(entity.getProperty("owner"))) {
+        return false;
+      }
+      entity.setProperty("leaseExpiresMillis",
+          release ? 0L : System.currentTimeMillis() + VOTE_LOG_LEASE_MILLIS);
+      datastore.put(transaction, entity);
+      transaction.commit();
+      return true;
+    } catch (EntityNotFoundException e) {
+      return false;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  /**
+   * Adds the votes of the aggregator log {@code logId} up to and including {@code segment} to the
+   * shards of its slot, in one transaction that also extends its lease. Does nothing if that
+   * segment was already flushed. Returns false, adding nothing, if another log has taken over the
+   * slot.
+   *
+   * @throws ConcurrentModificationException If the transaction lost a race, in which case nothing
+   *     was added.
+   */
+  static boolean applyFlush(DatastoreService datastore, String slot, String logId, long segment,
+      Map<String, Long> deltas) {
+    Key slotKey = slotKey(slot);
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity log;
+      try {
+        log = datastore.get(transaction, slotKey);
+      } catch (EntityNotFoundException e) {
+        return false;
+      }
+      if (!logId.equals(log.getProperty("owner"))) {
+        return false;
+      }
+      if ((long) log.getProperty("lastFlushedSegment") >= segment) {
+        return true;
+      }
+
+      List<Key> shardKeys = new ArrayList<>(deltas.size());
+      for (String genre : deltas.keySet()) {
+        shardKeys.add(KeyFactory.createKey(slotKey, SHARD_KIND, genre));
+      }
+      Map<Key, Entity> shards = datastore.get(transaction, shardKeys);
+
+      List<Entity> updated = new ArrayList<>(deltas.size() + 1);
+      for (Key shardKey : shardKeys) {
+        String genre = shardKey.getName();
+        Entity shard = shards.containsKey(shardKey)
+            ? shards.get(shardKey) : newShard(shardKey, genre, 0);
+        shard.setProperty("count", (long) shard.getProperty("count") + deltas.get(genre));
+        updated.add(shard);
+      }
+      log.setProperty("lastFlushedSegment", segment);
+      log.setProperty("leaseExpiresMillis", System.currentTimeMillis() + VOTE_LOG_LEASE_MILLIS);
+      updated.add(log);
+      datastore.put(transaction, updated);
+      transaction.commit();
+      return true;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
+  /** The votes flushed into a slot, as of one consistent read. */
+  static final class SlotCounts {
+    final long lastFlushedSegment;
+    final Map<String, Long> counts;
+
+    SlotCounts(long lastFlushedSegment, Map<String, Long> counts) {
+      this.lastFlushedSegment = lastFlushedSegment;
+      this.counts = counts;
+    }
+  }
+
+  /**
+   * Returns the number of votes for each genre that has any.
+   */
+  static Map<String, Long> getCounts(DatastoreService datastore) {
+    return getCounts(datastore, null);
+  }
+
+  /**
+   * Returns the number of votes for each genre that has any, leaving out the votes flushed into
+   * the vote log slot {@code skippedSlot}, if it isn't null. Those are better read with
+   * {@link #getSlotCounts}, since this query may not see the latest flushes yet.
+   */
+  static Map<String, Long> getCounts(DatastoreService datastore, String skippedSlot) {
+    Key skippedSlotKey = skippedSlot == null ? null : slotKey(skippedSlot);
+    Map<String, Long> counts = new HashMap<>();
+    for (Entity shard : datastore.prepare(new Query(SHARD_KIND))
+        .asIterable(FetchOptions.Builder.withChunkSize(500))) {
+      if (skippedSlotKey == null || !skippedSlotKey.equals(shard.getKey().getParent())) {
+        String genre = (String) shard.getProperty("genre");
+        counts.merge(genre, (long) shard.getProperty("count"), Long::sum);
+      }
+    }
+    counts.values().removeIf(count -> count == 0);
+    return counts;
+  }
+
+  /**
+   * Returns the votes flushed into the vote log slot {@code slot} together with the last segment
+   * they cover. Both are read with one ancestor query, so they are up to date and agree with each
+   * other.
+   */
+  static SlotCounts getSlotCounts(DatastoreService datastore, String slot) {
+    long lastFlushedSegment = -1;
+    Map<String, Long> counts = new HashMap<>();
+    for (Entity entity : datastore.prepare(new Query(slotKey(slot)))
+        .asIterable(FetchOptions.Builder.withChunkSize(500))) {
+      if (entity.getKind().equals(LOG_KIND)) {
+        lastFlushedSegment = (long) entity.getProperty("lastFlushedSegment");
+      } else if (entity.getKind().equals(SHARD_KIND)) {
+        counts.merge(entity.getKey().getName(), (long) entity.getProperty("count"), Long::sum);
+      }
+    }
+    return new SlotCounts(lastFlushedSegment, counts);
+  }
+
+  private static Key slotKey(String slot) {
+    return KeyFactory.createKey(LOG_KIND, slot);
+  }
+
+  private static Key shardKey(String genre, String shard) {
+    // The shard comes after the last '#', so shards of different genres never share a name.
+    return KeyFactory.createKey(SHARD_KIND, genre + "#" + shard);
+  }
+
+  private static Entity newShard(Key key, String genre, long count) {
+    Entity shard = new Entity(key);
+    shard.setProperty("genre", genre);
+    shard.setProperty("count", count);
+    return shard;
+  }
+}
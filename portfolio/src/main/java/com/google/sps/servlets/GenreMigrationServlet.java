@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.PropertyProjection;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Backfills the genre counters from the {@code Vote} entities that were stored, one per vote,
+ * before the counters existed. Votes aren't stored that way anymore, so this only needs to run
+ * once after deploying the counters. Running it again sets the same counts, so it is safe to
+ * repeat if it fails part way.
+ *
+ * <p>Only admins of the app may run it, with a POST. It sends back how many votes it counted.
+ */
+@WebServlet("/genre-data/migrate")
+public class GenreMigrationServlet extends HttpServlet {
+
+  private PortfolioJson json;
+
+  @Override
+  public void init() {
+    json = PortfolioContextListener.getJson(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    UserService userService = UserServiceFactory.getUserService();
+    if (!userService.isUserLoggedIn() || !userService.isUserAdmin()) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    // Only reads the genre of each vote, in chunks, rather than whole entities.
+    Query query = new Query("Vote");
+    query.addProjection(new PropertyProjection("genre", String.class));
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+
+    long votes = 0;
+    Map<String, Long> genreVotes = new HashMap<>();
+    for (Entity vote : datastore.prepare(query)
+        .asIterable(FetchOptions.Builder.withChunkSize(DeleteCommentsServlet.CHUNK_SIZE))) {
+      String genre = (String) vote.getProperty("genre");
+      // Forms sent without picking a genre don't count as votes anymore.
+      if (genre != null && !genre.isEmpty()) {
+        genreVotes.merge(genre, 1L, Long::sum);
+        votes++;
+      }
+    }
+
+    for (Map.Entry<String, Long> entry : genreVotes.entrySet()) {
+      GenreCounter.setBackfill(datastore, entry.getKey(), entry.getValue());
+    }
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("votes", votes);
+    result.put("genres", genreVotes);
+    response.setContentType("application/json;");
+    json.getGson().toJson(result, response.getWriter());
+  }
+}
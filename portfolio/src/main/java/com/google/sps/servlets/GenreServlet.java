@@ -16,62 +16,71 @@ package com.google.sps.servlets;
 
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.QueryResultList;
-import com.google.gson.Gson;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-
+/**
+ * Counts votes for music genres and sends back how many votes each genre has. The votes are kept
+ * in {@link GenreCounter}'s sharded counters. When the app has a {@link VoteAggregator}, votes are
+ * counted in it and flushed to the counters in batches, and the counts sent back include the votes
+ * it hasn't flushed yet.
+ */
 @WebServlet("/genre-data")
 public class GenreServlet extends HttpServlet {
 
-  private Map<String, Integer> genreVotes;
+  private PortfolioJson json;
+  private VoteAggregator voteAggregator;
 
   @Override
-  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-
-    genreVotes = new HashMap();
-
-    Query query = new Query("Vote");
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
+  public void init() {
+    json = PortfolioContextListener.getJson(getServletContext());
+    voteAggregator = PortfolioContextListener.getVoteAggregator(getServletContext());
+  }
 
-    for (Entity entity : results.asIterable()) {
-      String genre = (String) entity.getProperty("genre");
-      
-      int currentVotes;
-      if (genreVotes.containsKey(genre)) {
-          currentVotes = genreVotes.get(genre);
-      } else {
-          currentVotes = 0; 
-      }
-      genreVotes. put(genre, currentVotes + 1);
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Map<String, Long> genreVotes;
+    if (voteAggregator != null) {
+      genreVotes = voteAggregator.getCounts();
+      flushVotesIfDue();
+    } else {
+      genreVotes = GenreCounter.getCounts(DatastoreServiceFactory.getDatastoreService());
     }
 
     response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(genreVotes);
-    response.getWriter().println(json);
+    json.writeGenreVotes(response.getWriter(), genreVotes);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String genre = request.getParameter("genre");
-    Entity voteEntity = new Entity("Vote");
-    voteEntity.setProperty("genre", genre);
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.put(voteEntity);
+    // A form sent without picking a genre isn't a vote.
+    if (genre != null && !genre.isEmpty()) {
+      if (voteAggregator != null) {
+        voteAggregator.record(genre);
+        flushVotesIfDue();
+      } else {
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        GenreCounter.increment(datastore, genre, 1);
+      }
+    }
 
     response.sendRedirect("/music.html");
   }
+
+  /**
+   * Flushes the aggregated votes if it is time to. A flush that fails is retried by the next one,
+   * and the votes are kept in the aggregator's log meanwhile, so the request still succeeds.
+   */
+  private void flushVotesIfDue() {
+    try {
+      voteAggregator.flushIfDue();
+    } catch (IOException | RuntimeException e) {
+      log("Could not flush the aggregated votes", e);
+    }
+  }
 }
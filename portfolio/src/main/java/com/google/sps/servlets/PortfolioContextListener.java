@@ -0,0 +1,159 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Creates the objects shared by the portfolio servlets once, when the app starts, and keeps them in
+ * the servlet context.
+ */
+@WebListener
+public class PortfolioContextListener implements ServletContextListener {
+  private static final String JSON = PortfolioJson.class.getName();
+  private static final String RECENT_COMMENTS = RecentComments.class.getName();
+  private static final String VOTE_AGGREGATOR = VoteAggregator.class.getName();
+
+  /**
+   * Names the directory of the vote aggregator's log, as a system property or init parameter. It
+   * defaults to the temporary directory, which on App Engine is lost with the instance, so the log
+   * only keeps votes safe across a crash where it is set to a disk that lasts.
+   */
+  static final String VOTE_LOG_DIR_PARAMETER = "portfolio.voteLogDir";
+
+  // How often the votes aggregated in memory are flushed to Datastore.
+  private static final long VOTE_FLUSH_INTERVAL_MILLIS = 10_000;
+
+  // Flushes the aggregated votes, if background threads are allowed.
+  private ScheduledExecutorService voteFlusher;
+
+  // The most recent comments kept in memory, and how long they are used before being reloaded.
+  private static final int RECENT_COMMENTS_CAPACITY = 100;
+  private static final long RECENT_COMMENTS_MAX_STALENESS_MILLIS = 30_000;
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    ServletContext context = event.getServletContext();
+    context.setAttribute(JSON, new PortfolioJson());
+
+    RecentComments recentComments =
+        new RecentComments(RECENT_COMMENTS_CAPACITY, RECENT_COMMENTS_MAX_STALENESS_MILLIS);
+    try {
+      DataServlet.loadRecentComments(recentComments);
+    } catch (RuntimeException e) {
+      // The first request for comments loads them instead.
+      context.log("Could not load the recent comments", e);
+    }
+    context.setAttribute(RECENT_COMMENTS, recentComments);
+
+    openVoteAggregator(context);
+  }
+
+  /**
+   * Opens the vote aggregator and schedules its flushes. Without it, votes go straight to
+   * Datastore.
+   */
+  private void openVoteAggregator(ServletContext context) {
+    String directory = System.getProperty(VOTE_LOG_DIR_PARAMETER);
+    if (directory == null) {
+      directory = context.getInitParameter(VOTE_LOG_DIR_PARAMETER);
+    }
+    Path logDirectory = directory != null
+        ? Paths.get(directory)
+        : Paths.get(System.getProperty("java.io.tmpdir"), "portfolio-votes");
+
+    VoteAggregator voteAggregator;
+    try {
+      voteAggregator = VoteAggregator.open(DatastoreServiceFactory.getDatastoreService(),
+          logDirectory, VOTE_FLUSH_INTERVAL_MILLIS);
+    } catch (IOException | RuntimeException e) {
+      context.log("Could not open the vote log in " + logDirectory, e);
+      return;
+    }
+    context.setAttribute(VOTE_AGGREGATOR, voteAggregator);
+
+    // Instances that may not run background threads, like automatically scaled App Engine ones,
+    // rely on GenreServlet's requests to flush when the interval has passed.
+    try {
+      voteFlusher =
+          Executors.newSingleThreadScheduledExecutor(ThreadManager.backgroundThreadFactory());
+      voteFlusher.scheduleWithFixedDelay(() -> {
+        try {
+          voteAggregator.tryFlush();
+        } catch (IOException | RuntimeException e) {
+          context.log("Could not flush the aggregated votes", e);
+        }
+      }, VOTE_FLUSH_INTERVAL_MILLIS, VOTE_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (RuntimeException e) {
+      if (voteFlusher != null) {
+        voteFlusher.shutdown();
+        voteFlusher = null;
+      }
+      context.log("Votes are flushed by requests, since there is no background thread: " + e);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    ServletContext context = event.getServletContext();
+    if (voteFlusher != null) {
+      voteFlusher.shutdownNow();
+    }
+    VoteAggregator voteAggregator = getVoteAggregator(context);
+    if (voteAggregator != null) {
+      try {
+        voteAggregator.close();
+      } catch (IOException | RuntimeException e) {
+        context.log("Votes that could not be flushed stay in the vote log", e);
+      }
+    }
+    context.removeAttribute(JSON);
+    context.removeAttribute(RECENT_COMMENTS);
+    context.removeAttribute(VOTE_AGGREGATOR);
+  }
+
+  /**
+   * Returns the JSON serializer of the app that {@code context} belongs to.
+   */
+  static PortfolioJson getJson(ServletContext context) {
+    return (PortfolioJson) context.getAttribute(JSON);
+  }
+
+  /**
+   * Returns the recent comments kept in memory by the app that {@code context} belongs to.
+   */
+  static RecentComments getRecentComments(ServletContext context) {
+    return (RecentComments) context.getAttribute(RECENT_COMMENTS);
+  }
+
+  /**
+   * Returns the vote aggregator of the app that {@code context} belongs to, or null if its log
+   * could not be opened.
+   */
+  static VoteAggregator getVoteAggregator(ServletContext context) {
+    return (VoteAggregator) context.getAttribute(VOTE_AGGREGATOR);
+  }
+}
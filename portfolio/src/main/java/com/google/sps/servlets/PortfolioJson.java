@@ -0,0 +1,204 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.servlets.DataServlet.Comment;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the portfolio's responses into JSON. One instance is shared by every servlet, so the type
+ * adapters are only looked up once instead of on every request. Instances are thread-safe.
+ *
+ * <p>The adapters are written by hand rather than found by reflection, and write the same JSON the
+ * reflection-based ones did.
+ */
+public final class PortfolioJson {
+  private static final TypeToken<List<Comment>> COMMENTS = new TypeToken<List<Comment>>() {};
+  private static final TypeToken<Map<String, Long>> GENRE_VOTES =
+      new TypeToken<Map<String, Long>>() {};
+  private static final TypeToken<Map<String, String>> LOGIN =
+      new TypeToken<Map<String, String>>() {};
+
+  private final Gson gson;
+  private final TypeAdapter<List<Comment>> commentsAdapter;
+  private final TypeAdapter<Map<String, Long>> genreVotesAdapter;
+  private final TypeAdapter<Map<String, String>> loginAdapter;
+
+  public PortfolioJson() {
+    gson = new GsonBuilder()
+        .registerTypeAdapter(Comment.class, new CommentAdapter().nullSafe())
+        .registerTypeAdapter(GENRE_VOTES.getType(), new GenreVotesAdapter().nullSafe())
+        .registerTypeAdapter(LOGIN.getType(), new LoginAdapter().nullSafe())
+        .create();
+    commentsAdapter = gson.getAdapter(COMMENTS);
+    genreVotesAdapter = gson.getAdapter(GENRE_VOTES);
+    loginAdapter = gson.getAdapter(LOGIN);
+  }
+
+  /**
+   * Returns the {@code Gson} the adapters are registered with, for reading and writing other types.
+   */
+  public Gson getGson() {
+    return gson;
+  }
+
+  /**
+   * Writes {@code comments} to {@code out} as a JSON array.
+   */
+  public void writeComments(Writer out, List<Comment> comments) throws IOException {
+    write(out, commentsAdapter, comments);
+  }
+
+  /**
+   * Writes one page of comments to {@code out} as a JSON object, with the cursor to the next page
+   * if there is one.
+   */
+  public void writeCommentPage(Writer out, List<Comment> comments, String cursor)
+      throws IOException {
+    JsonWriter writer = newJsonWriter(out);
+    writer.beginObject();
+    writer.name("comments");
+    commentsAdapter.write(writer, comments);
+    writer.name("cursor").value(cursor);
+    writer.endObject();
+    writer.flush();
+  }
+
+  /**
+   * Writes the number of votes for each genre to {@code out} as a JSON object.
+   */
+  public void writeGenreVotes(Writer out, Map<String, Long> genreVotes) throws IOException {
+    write(out, genreVotesAdapter, genreVotes);
+  }
+
+  /**
+   * Writes the login status map to {@code out} as a JSON object.
+   */
+  public void writeLogin(Writer out, Map<String, String> login) throws IOException {
+    write(out, loginAdapter, login);
+  }
+
+  private <T> void write(Writer out, TypeAdapter<T> adapter, T value) throws IOException {
+    JsonWriter writer = newJsonWriter(out);
+    adapter.write(writer, value);
+    writer.flush();
+  }
+
+  private JsonWriter newJsonWriter(Writer out) throws IOException {
+    // Like Gson.toJson, leaves out null fields and escapes HTML characters such as < and &.
+    JsonWriter writer = gson.newJsonWriter(out);
+    writer.setHtmlSafe(true);
+    return writer;
+  }
+
+  private static final class CommentAdapter extends TypeAdapter<Comment> {
+    @Override
+    public void write(JsonWriter out, Comment comment) throws IOException {
+      out.beginObject();
+      out.name("name").value(comment.getName());
+      out.name("comment").value(comment.getComment());
+      out.name("timestamp").value(comment.getTimestamp());
+      out.endObject();
+    }
+
+    @Override
+    public Comment read(JsonReader in) throws IOException {
+      String name = null;
+      String text = null;
+      long timestamp = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "name":
+            name = nextStringOrNull(in);
+            break;
+          case "comment":
+            text = nextStringOrNull(in);
+            break;
+          case "timestamp":
+            timestamp = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Comment(name, text, timestamp);
+    }
+  }
+
+  private static final class GenreVotesAdapter extends TypeAdapter<Map<String, Long>> {
+    @Override
+    public void write(JsonWriter out, Map<String, Long> genreVotes) throws IOException {
+      out.beginObject();
+      for (Map.Entry<String, Long> entry : genreVotes.entrySet()) {
+        out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Map<String, Long> read(JsonReader in) throws IOException {
+      Map<String, Long> genreVotes = new LinkedHashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        genreVotes.put(in.nextName(), in.nextLong());
+      }
+      in.endObject();
+      return genreVotes;
+    }
+  }
+
+  private static final class LoginAdapter extends TypeAdapter<Map<String, String>> {
+    @Override
+    public void write(JsonWriter out, Map<String, String> login) throws IOException {
+      out.beginObject();
+      for (Map.Entry<String, String> entry : login.entrySet()) {
+        out.name(String.valueOf(entry.getKey())).value(entry.getValue());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Map<String, String> read(JsonReader in) throws IOException {
+      Map<String, String> login = new LinkedHashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        login.put(in.nextName(), nextStringOrNull(in));
+      }
+      in.endObject();
+      return login;
+    }
+  }
+
+  private static String nextStringOrNull(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+}
@@ -0,0 +1,301 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.sps.servlets.DataServlet.Comment;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The newest comments, kept in memory so that most {@code /data} requests don't have to query
+ * Datastore. Comments are written through to it as they are posted, and it is reloaded from
+ * Datastore once it is older than its maximum staleness, which bounds how long comments posted
+ * through other instances of the app can be missing from it. Reads and writes don't lock.
+ *
+ * <p>The comments are kept in a ring buffer: a fixed array where the comment with sequence number
+ * {@code s} goes in slot {@code s % capacity}, overwriting the one {@code capacity} comments older.
+ * Each slot remembers the sequence number of its comment, so a reader that races a writer sees that
+ * a slot isn't what it expected and falls back to Datastore instead of returning the wrong comment.
+ * Reloading or clearing replaces the whole ring at once. A reload keeps the comments written to the
+ * ring it replaces that its Datastore snapshot doesn't have yet, and a writer that finds its ring
+ * replaced under it adds its comment again to the new one if no reload carried it over.
+ */
+final class RecentComments {
+  /**
+   * Counts how well the buffer is doing, in the form they are sent by {@code /data/stats}.
+   */
+  static final class Stats {
+    long hits;
+    long misses;
+    double hitRate;
+    long writes;
+    long reloads;
+    long clears;
+    int size;
+    int capacity;
+    // How long ago the buffer was loaded from Datastore, or -1 if it hasn't been yet.
+    long stalenessMillis;
+    long maxStalenessMillis;
+  }
+
+  private static final class Entry {
+    final long sequence;
+    final Comment comment;
+
+    Entry(long sequence, Comment comment) {
+      this.sequence = sequence;
+      this.comment = comment;
+    }
+  }
+
+  private static final class Ring {
+    final AtomicReferenceArray<Entry> slots;
+    final AtomicLong next = new AtomicLong();
+    // Whether the ring started out with every comment in Datastore, so that a request for more
+    // comments than it holds can still be answered from it until it wraps around.
+    final boolean complete;
+    // Whether the ring was emptied because every comment was deleted, so that a reload read
+    // before the delete doesn't bring the comments back.
+    final boolean cleared;
+    final long syncedMillis;
+
+    Ring(int capacity, boolean complete, boolean cleared, long syncedMillis) {
+      this.slots = new AtomicReferenceArray<>(capacity);
+      this.complete = complete;
+      this.cleared = cleared;
+      this.syncedMillis = syncedMillis;
+    }
+
+    void add(Comment comment) {
+      long sequence = next.getAndIncrement();
+      slots.set((int) (sequence % slots.length()), new Entry(sequence, comment));
+    }
+
+    /**
+     * Returns the comments that can be read from the ring, oldest first, leaving out slots a
+     * writer hasn't filled yet.
+     */
+    List<Comment> comments() {
+      long end = next.get();
+      List<Comment> comments = new ArrayList<>();
+      for (long sequence = Math.max(0, end - slots.length()); sequence < end; sequence++) {
+        Entry entry = slots.get((int) (sequence % slots.length()));
+        if (entry != null && entry.sequence == sequence) {
+          comments.add(entry.comment);
+        }
+      }
+      return comments;
+    }
+
+    boolean contains(Key key) {
+      for (int i = 0; i < slots.length(); i++) {
+        Entry entry = slots.get(i);
+        if (entry != null && key.equals(entry.comment.getKey())) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  // The sync time of the ring before the first load, which is never fresh.
+  private static final long NEVER_SYNCED = 0;
+
+  private final int capacity;
+  private final long maxStalenessMillis;
+  private final AtomicReference<Ring> ring;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong writes = new AtomicLong();
+  private final AtomicLong reloads = new AtomicLong();
+  private final AtomicLong clears = new AtomicLong();
+
+  /**
+   * Creates an empty buffer that needs to be loaded before it can answer requests.
+   *
+   * @param capacity The most comments to keep.
+   * @param maxStalenessMillis How long the buffer answers requests after it was loaded.
+   */
+  RecentComments(int capacity, long maxStalenessMillis) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.ring = new AtomicReference<>(new Ring(capacity, false, false, NEVER_SYNCED));
+  }
+
+  /**
+   * Returns the most comments the buffer keeps.
+   */
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the newest {@code count} comments in the order of {@link Comment#NEWEST_FIRST}, or null
+   * if the buffer can't answer for sure and Datastore has to be asked instead. Fewer comments are
+   * returned only if there are no more.
+   */
+  List<Comment> getNewest(int count) {
+    Ring current = ring.get();
+    List<Comment> newest = count <= capacity && isFresh(current) ? read(current, count) : null;
+    (newest == null ? misses : hits).incrementAndGet();
+    return newest;
+  }
+
+  private static List<Comment> read(Ring ring, int count) {
+    long end = ring.next.get();
+    if (end < count) {
+      if (!ring.complete) {
+        return null;
+      }
+      count = (int) end;
+    }
+
+    // Comments are added about in order, but not exactly, so all of them are sorted to find the
+    // newest.
+    int held = (int) Math.min(end, ring.slots.length());
+    List<Comment> newest = new ArrayList<>(held);
+    for (long sequence = end - 1; sequence >= end - held; sequence--) {
+      Entry entry = ring.slots.get((int) (sequence % ring.slots.length()));
+      if (entry == null || entry.sequence != sequence) {
+        // A writer hasn't filled this slot yet, or has already moved past it.
+        return null;
+      }
+      newest.add(entry.comment);
+    }
+    newest.sort(Comment.NEWEST_FIRST);
+
+    // The comments that fell out of the ring are no newer than the oldest one left, but those of
+    // the same millisecond may still come before it by key.
+    boolean holdsAll = ring.complete && end <= ring.slots.length();
+    if (!holdsAll && count > 0
+        && newest.get(count - 1).getTimestamp() <= newest.get(held - 1).getTimestamp()) {
+      return null;
+    }
+    return new ArrayList<>(newest.subList(0, count));
+  }
+
+  /**
+   * Adds a comment that was just stored in Datastore.
+   */
+  void add(Comment comment) {
+    Ring target = ring.get();
+    target.add(comment);
+    writes.incrementAndGet();
+
+    // A reload that swapped the ring out after it read it has missed the comment.
+    Key key = comment.getKey();
+    for (Ring current = ring.get(); current != target && key != null; current = ring.get()) {
+      target = current;
+      if (!target.contains(key)) {
+        target.add(comment);
+      }
+    }
+  }
+
+  /**
+   * Replaces the buffer with comments just read from Datastore, merging in the comments added
+   * since that the snapshot doesn't have, and returns the comments it now holds, newest first. Keeps the
+   * buffer as it is if it was cleared after the snapshot was read.
+   *
+   * @param newestFirst Up to {@link #getCapacity()} of the newest comments, newest first.
+   * @param complete Whether these are every comment in Datastore.
+   * @param readMillis When the snapshot started to be read.
+   */
+  List<Comment> reload(List<Comment> newestFirst, boolean complete, long readMillis) {
+    int loaded = Math.min(newestFirst.size(), capacity);
+    Set<Key> loadedKeys = new HashSet<>();
+    for (int i = 0; i < loaded; i++) {
+      loadedKeys.add(newestFirst.get(i).getKey());
+    }
+    // Comments older than the snapshot's oldest have fallen out of it rather than been missed.
+    long oldestTimestamp = loaded == 0 || complete
+        ? Long.MIN_VALUE : newestFirst.get(loaded - 1).getTimestamp();
+
+    while (true) {
+      Ring current = ring.get();
+      if (current.cleared && current.syncedMillis >= readMillis) {
+        return newestFirst(current);
+      }
+      List<Comment> merged = new ArrayList<>(newestFirst.subList(0, loaded));
+      for (Comment comment : current.comments()) {
+        if (!loadedKeys.contains(comment.getKey()) && comment.getTimestamp() >= oldestTimestamp) {
+          merged.add(comment);
+        }
+      }
+      // A comment carried over can be older than the newest ones of the snapshot.
+      merged.sort(Comment.NEWEST_FIRST);
+
+      Ring reloaded =
+          new Ring(capacity, complete && merged.size() <= capacity, false, readMillis);
+      for (int i = Math.min(merged.size(), capacity) - 1; i >= 0; i--) {
+        reloaded.add(merged.get(i));
+      }
+      if (ring.compareAndSet(current, reloaded)) {
+        reloads.incrementAndGet();
+        return newestFirst(reloaded);
+      }
+    }
+  }
+
+  private static List<Comment> newestFirst(Ring ring) {
+    List<Comment> comments = ring.comments();
+    comments.sort(Comment.NEWEST_FIRST);
+    return comments;
+  }
+
+  /**
+   * Empties the buffer after every comment was deleted from Datastore.
+   */
+  void clear() {
+    ring.set(new Ring(capacity, true, true, System.currentTimeMillis()));
+    clears.incrementAndGet();
+  }
+
+  /**
+   * Returns how well the buffer is doing.
+   */
+  Stats getStats() {
+    Ring current = ring.get();
+    Stats stats = new Stats();
+    stats.hits = hits.get();
+    stats.misses = misses.get();
+    long requests = stats.hits + stats.misses;
+    stats.hitRate = requests == 0 ? 0 : (double) stats.hits / requests;
+    stats.writes = writes.get();
+    stats.reloads = reloads.get();
+    stats.clears = clears.get();
+    stats.size = (int) Math.min(current.next.get(), capacity);
+    stats.capacity = capacity;
+    stats.stalenessMillis = current.syncedMillis == NEVER_SYNCED
+        ? -1 : Math.max(0, System.currentTimeMillis() - current.syncedMillis);
+    stats.maxStalenessMillis = maxStalenessMillis;
+    return stats;
+  }
+
+  private boolean isFresh(Ring current) {
+    return current.syncedMillis != NEVER_SYNCED
+        && System.currentTimeMillis() - current.syncedMillis <= maxStalenessMillis;
+  }
+}
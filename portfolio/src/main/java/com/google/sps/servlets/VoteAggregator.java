@@ -0,0 +1,459 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Counts genre votes in memory and flushes them to {@link GenreCounter} in batches, so that a burst
+ * of votes costs one Datastore transaction per flush instead of one per vote.
+ *
+ * <p>Every vote is first appended to a write-ahead log on local disk and forced to it, so a vote
+ * that was acknowledged survives a crash of the process. Voters that arrive together share one
+ * force. The log is split into numbered segments. A flush seals the current segment, adds the
+ * pending counts to Datastore together with the number of the last segment they cover, and then
+ * deletes the sealed segments. The counts go to the shards of a slot that the aggregator leases
+ * from {@link GenreCounter}'s fixed pool; if the lease ran out and another aggregator took the slot
+ * over, the flush claims another one and goes there instead. When the aggregator opens, the
+ * segments left behind by a crash are replayed, leaving out those whose votes Datastore already
+ * has. A flush that fails is retried as it was by the next one, so votes are counted exactly once.
+ *
+ * <p>The log is only as durable as the disk it is on, so this is best effort where that disk
+ * doesn't outlive the instance. On App Engine, whose instances only have a temporary directory,
+ * the votes an instance hadn't flushed when it went away are lost: at most one flush interval's
+ * worth, since a flush doesn't wait for the instance to stop.
+ *
+ * <p>Votes are counted in a {@code LongAdder} per genre, so voters don't contend with each other.
+ * They only share the read side of a lock, which a flush takes the write side of for as long as it
+ * takes to seal a segment, and again to take the votes it committed out of the pending counts.
+ *
+ * <p>Reading the counts adds the pending votes to the flushed ones, which this aggregator reads
+ * with an ancestor query that always sees its latest flush. A read that a flush seals or finishes
+ * under is done again, so that no vote is left out or counted twice.
+ */
+final class VoteAggregator implements AutoCloseable {
+  private static final String ID_FILE = "id";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".wal";
+
+  // How often closing tries to flush before leaving the votes in the log, and how long it waits
+  // after the first failure, growing with each one.
+  private static final int CLOSE_FLUSH_ATTEMPTS = 5;
+  private static final long CLOSE_RETRY_MILLIS = 200;
+
+  /** A flush that was sent to Datastore but not yet known to have committed. */
+  private static final class Flush {
+    final long segment;
+    final Map<String, Long> deltas;
+
+    Flush(long segment, Map<String, Long> deltas) {
+      this.segment = segment;
+      this.deltas = deltas;
+    }
+  }
+
+  private final DatastoreService datastore;
+  private final Path directory;
+  private final String logId;
+  private final long flushIntervalMillis;
+
+  // The slot of the vote log pool that flushes go to. Only changed by the thread that holds the
+  // flushing flag, while it holds the write side of segmentLock.
+  private volatile String slot;
+  private long leaseRenewedMillis = System.currentTimeMillis();
+
+  private final ConcurrentHashMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+
+  // Counts the records written to the log, and those of them that were forced to disk, so that
+  // one force covers every record written before it started.
+  private final AtomicLong writtenRecords = new AtomicLong();
+  private final Object forceLock = new Object();
+  private long forcedRecords; // Guarded by forceLock.
+  private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+  private final AtomicBoolean flushing = new AtomicBoolean();
+
+  // Guarded by segmentLock.
+  private long segment;
+  private FileChannel segmentChannel;
+
+  // Only changed by the thread that holds the flushing flag, while it holds the write side of
+  // segmentLock, which also counts the changes.
+  private volatile Flush unconfirmedFlush;
+  private volatile long flushChanges;
+  private volatile long lastFlushMillis = System.currentTimeMillis();
+
+  private VoteAggregator(DatastoreService datastore, Path directory, String logId,
+      long flushIntervalMillis) {
+    this.datastore = datastore;
+    this.directory = directory;
+    this.logId = logId;
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  /**
+   * Opens the aggregator whose log is kept in {@code directory}, first flushing any votes a crash
+   * left in it.
+   *
+   * @param flushIntervalMillis How often {@link #flushIfDue} flushes.
+   */
+  static VoteAggregator open(DatastoreService datastore, Path directory, long flushIntervalMillis)
+      throws IOException {
+    Files.createDirectories(directory);
+    Path idFile = directory.resolve(ID_FILE);
+    if (!Files.exists(idFile)) {
+      Files.write(idFile, UUID.randomUUID().toString().getBytes(UTF_8));
+    }
+    String logId = new String(Files.readAllBytes(idFile), UTF_8).trim();
+
+    VoteAggregator aggregator =
+        new VoteAggregator(datastore, directory, logId, flushIntervalMillis);
+    aggregator.replay();
+    return aggregator;
+  }
+
+  private void replay() throws IOException {
+    GenreCounter.Slot claimed = claimSlot();
+    slot = claimed.name;
+    List<Long> segments = listSegments();
+    long lastFlushed = claimed.lastFlushedSegment;
+
+    Map<String, Long> deltas = new HashMap<>();
+    for (long sealed : segments) {
+      if (sealed > lastFlushed) {
+        readSegment(segmentPath(sealed), deltas);
+      }
+    }
+    long last = segments.isEmpty()
+        ? lastFlushed : Math.max(lastFlushed, segments.get(segments.size() - 1));
+    if (!deltas.isEmpty() && !GenreCounter.applyFlush(datastore, slot, logId, last, deltas)) {
+      throw new IllegalStateException("Lost vote log " + slot + " while replaying it");
+    }
+    for (long sealed : segments) {
+      Files.delete(segmentPath(sealed));
+    }
+
+    segment = last + 1;
+    segmentChannel = openSegment(segment);
+  }
+
+  /**
+   * Counts a vote for {@code genre}. Once this returns, the vote is on disk.
+   */
+  void record(String genre) throws IOException {
+    byte[] name = genre.getBytes(UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + name.length);
+    record.putInt(name.length).put(name).flip();
+
+    segmentLock.readLock().lock();
+    try {
+      // Writes to a channel opened for appending never interleave, even from several threads.
+      while (record.hasRemaining()) {
+        segmentChannel.write(record);
+      }
+      forceThrough(writtenRecords.incrementAndGet());
+      pending.computeIfAbsent(genre, unused -> new LongAdder()).increment();
+    } finally {
+      segmentLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Forces the log to disk up to the {@code record}th record written, unless a force that started
+   * after it was written already did. Called with the read side of segmentLock held, so the
+   * segment can't be sealed meanwhile.
+   */
+  private void forceThrough(long record) throws IOException {
+    synchronized (forceLock) {
+      if (forcedRecords >= record) {
+        return;
+      }
+      long written = writtenRecords.get();
+      segmentChannel.force(false);
+      forcedRecords = written;
+    }
+  }
+
+  /**
+   * Returns the votes for each genre that haven't been flushed yet.
+   */
+  Map<String, Long> getPendingCounts() {
+    Map<String, Long> counts = new HashMap<>();
+    pending.forEach((genre, adder) -> {
+      long count = adder.sum();
+      if (count != 0) {
+        counts.put(genre, count);
+      }
+    });
+    return counts;
+  }
+
+  /**
+   * Returns the number of votes for each genre that has any: the votes in Datastore, together with
+   * the votes this aggregator hasn't flushed yet and every vote it has, even those the query over
+   * every shard doesn't see yet.
+   */
+  Map<String, Long> getCounts() {
+    while (true) {
+      long changes;
+      String countedSlot;
+      Map<String, Long> pendingCounts;
+      Flush flush;
+      segmentLock.readLock().lock();
+      try {
+        changes = flushChanges;
+        countedSlot = slot;
+        pendingCounts = getPendingCounts();
+        flush = unconfirmedFlush;
+      } finally {
+        segmentLock.readLock().unlock();
+      }
+      Map<String, Long> counts = GenreCounter.getCounts(datastore, countedSlot);
+      GenreCounter.SlotCounts flushed = GenreCounter.getSlotCounts(datastore, countedSlot);
+      if (flushChanges != changes) {
+        continue;
+      }
+
+      // The flush that was waiting may have committed since, and then its votes are in both.
+      if (flush != null && flushed.lastFlushedSegment >= flush.segment) {
+        flush.deltas.forEach((genre, delta) -> pendingCounts.merge(genre, -delta, Long::sum));
+      }
+      pendingCounts.forEach((genre, count) -> counts.merge(genre, count, Long::sum));
+      flushed.counts.forEach((genre, count) -> counts.merge(genre, count, Long::sum));
+      counts.values().removeIf(count -> count == 0);
+      return counts;
+    }
+  }
+
+  /**
+   * Flushes if the last flush was at least the flush interval ago and no other thread is flushing.
+   */
+  void flushIfDue() throws IOException {
+    if (System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis) {
+      tryFlush();
+    }
+  }
+
+  /**
+   * Flushes the pending votes unless another thread already is, returning whether this one did.
+   */
+  boolean tryFlush() throws IOException {
+    if (!flushing.compareAndSet(false, true)) {
+      return false;
+    }
+    try {
+      lastFlushMillis = System.currentTimeMillis();
+      if (unconfirmedFlush == null) {
+        sealSegment();
+      }
+      Flush flush = unconfirmedFlush;
+      if (flush == null) {
+        renewLeaseIfDue();
+      } else {
+        // The flush was never applied if another log took over the slot, so it can go to the next.
+        while (!GenreCounter.applyFlush(datastore, slot, logId, flush.segment, flush.deltas)) {
+          changeSlot(claimSlot().name);
+        }
+        leaseRenewedMillis = System.currentTimeMillis();
+        confirmFlush(flush);
+        for (long sealed : listSegments()) {
+          if (sealed <= flush.segment) {
+            Files.delete(segmentPath(sealed));
+          }
+        }
+      }
+      return true;
+    } finally {
+      flushing.set(false);
+    }
+  }
+
+  /**
+   * Starts a new segment and makes the votes recorded in the ones before it the unconfirmed flush,
+   * unless there were none.
+   */
+  private void sealSegment() throws IOException {
+    segmentLock.writeLock().lock();
+    try {
+      Map<String, Long> deltas = getPendingCounts();
+      if (deltas.isEmpty()) {
+        return;
+      }
+      long sealed = segment;
+      FileChannel next = openSegment(sealed + 1);
+      segmentChannel.close();
+      segmentChannel = next;
+      segment = sealed + 1;
+      unconfirmedFlush = new Flush(sealed, deltas);
+      flushChanges++;
+    } finally {
+      segmentLock.writeLock().unlock();
+    }
+  }
+
+  private GenreCounter.Slot claimSlot() {
+    GenreCounter.Slot claimed = GenreCounter.claimSlot(datastore, logId);
+    if (claimed == null) {
+      throw new IllegalStateException("Every vote log slot is leased to another log");
+    }
+    return claimed;
+  }
+
+  private void changeSlot(String claimed) {
+    segmentLock.writeLock().lock();
+    try {
+      slot = claimed;
+      flushChanges++;
+    } finally {
+      segmentLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Extends the lease of the slot when half of it has passed without a flush, so that an idle
+   * aggregator keeps its slot.
+   */
+  private void renewLeaseIfDue() {
+    if (System.currentTimeMillis() - leaseRenewedMillis >= GenreCounter.VOTE_LOG_LEASE_MILLIS / 2) {
+      if (!GenreCounter.renewLease(datastore, slot, logId, false)) {
+        changeSlot(claimSlot().name);
+      }
+      leaseRenewedMillis = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Takes the votes of a flush that committed out of the pending counts.
+   */
+  private void confirmFlush(Flush flush) {
+    segmentLock.writeLock().lock();
+    try {
+      flush.deltas.forEach((genre, delta) -> pending.get(genre).add(-delta));
+      unconfirmedFlush = null;
+      flushChanges++;
+    } finally {
+      segmentLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Flushes the pending votes and closes the log. Votes that can't be flushed stay in the log and
+   * are flushed when it is opened again.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (flushBeforeClose()) {
+        // Nothing is left to flush, so another instance may have the slot right away.
+        GenreCounter.renewLease(datastore, slot, logId, true);
+      }
+    } finally {
+      segmentLock.writeLock().lock();
+      try {
+        segmentChannel.close();
+      } finally {
+        segmentLock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Tries a few times to flush, waiting a little longer after each failure, and returns whether it
+   * did. Throws what stopped the last attempt, if it failed rather than found another flush
+   * running.
+   */
+  private boolean flushBeforeClose() throws IOException {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        if (tryFlush()) {
+          return true;
+        }
+        if (attempt == CLOSE_FLUSH_ATTEMPTS) {
+          return false;
+        }
+      } catch (IOException | RuntimeException e) {
+        if (attempt == CLOSE_FLUSH_ATTEMPTS) {
+          throw e;
+        }
+      }
+      try {
+        Thread.sleep(CLOSE_RETRY_MILLIS * attempt);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+
+  private FileChannel openSegment(long number) throws IOException {
+    return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  private List<Long> listSegments() throws IOException {
+    List<Long> segments = new ArrayList<>();
+    try (DirectoryStream<Path> paths =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : paths) {
+        String name = path.getFileName().toString();
+        segments.add(Long.parseLong(
+            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+
+  /**
+   * Adds the votes in a segment to {@code deltas}. A record cut short by a crash was never
+   * acknowledged, so it is left out.
+   */
+  private static void readSegment(Path path, Map<String, Long> deltas) throws IOException {
+    ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(path));
+    while (records.remaining() >= Integer.BYTES) {
+      int length = records.getInt();
+      if (length < 0 || length > records.remaining()) {
+        break;
+      }
+      byte[] name = new byte[length];
+      records.get(name);
+      deltas.merge(new String(name, UTF_8), 1L, Long::sum);
+    }
+  }
+}
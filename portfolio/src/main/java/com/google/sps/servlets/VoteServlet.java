@@ -16,9 +16,9 @@ package com.google.sps.servlets;
 
 import com.google.appengine.api.users.UserService;
 import com.google.appengine.api.users.UserServiceFactory;
-import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -30,12 +30,19 @@ public class VoteServlet extends HttpServlet {
   private static final String LOGIN_STATUS_LOGGED_IN = "loggedIn";
   private static final String LOGIN_STATUS_LOGGED_OUT = "loggedOut";
 
+  private PortfolioJson json;
+
+  @Override
+  public void init() {
+    json = PortfolioContextListener.getJson(getServletContext());
+  }
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     String loginStatus; 
     String url; 
 
-    HashMap<String, String> loginMap = new HashMap();
+    Map<String, String> loginMap = new HashMap<>();
 
     UserService userService = UserServiceFactory.getUserService();
     if (userService.isUserLoggedIn()) {
@@ -52,15 +59,7 @@ public class VoteServlet extends HttpServlet {
     loginMap.put("loginStatus", loginStatus);
     loginMap.put("url", url);
 
-    String json = convertToJson(loginMap);
-
     response.setContentType("application/json;");
-    response.getWriter().println(json);
-  }
-
-  private String convertToJson(HashMap<String, String> loginMap) {
-    Gson gson = new Gson();
-    String json = gson.toJson(loginMap);
-    return json;
+    json.writeLogin(response.getWriter(), loginMap);
   }
 }
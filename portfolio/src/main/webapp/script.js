@@ -112,14 +112,36 @@ window.addEventListener('DOMContentLoaded', (event) => {
     showSlides(slideIndex);
 });
 
+/** The cursor to the next page of comments, or null if the last page is shown. */
+let nextCommentsCursor = null;
+
+/** Shows the first page of comments, replacing the ones shown before. */
 function getComments() {
+  document.getElementById('comments-container').innerHTML = "";
+  fetchComments(null);
+}
+
+/** Adds the next page of comments below the ones already shown. */
+function loadMoreComments() {
+  if (nextCommentsCursor !== null) {
+    fetchComments(nextCommentsCursor);
+  }
+}
+
+function fetchComments(cursor) {
   const limit = document.getElementById('input').value;
-  fetch('/data?limit-input=' + limit).then(response => response.json()).then((comments) => {
+  let url = '/data?limit-input=' + limit;
+  if (cursor !== null) {
+    url += '&cursor=' + encodeURIComponent(cursor);
+  }
+  fetch(url).then(response => response.json()).then((page) => {
     const commentElement = document.getElementById('comments-container');
-    commentElement.innerHTML = "";
-    comments.forEach((comment) => {
+    page.comments.forEach((comment) => {
       commentElement.appendChild(createCommentElement(comment));
     })
+    nextCommentsCursor = page.cursor || null;
+    document.getElementById('load-more-button').style.display =
+        nextCommentsCursor === null ? 'none' : 'inline-block';
   });
 }
 
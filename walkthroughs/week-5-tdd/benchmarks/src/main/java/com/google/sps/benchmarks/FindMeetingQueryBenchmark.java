@@ -0,0 +1,116 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.Event;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@code FindMeetingQuery.query} on synthetic calendars of different sizes, for requests
+ * of different sizes and shares of optional guests.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindMeetingQueryBenchmark {
+  private static final long SEED = 42;
+  private static final int REQUESTS = 256;
+  private static final long DURATION_30_MINUTES = 30;
+
+  @Param({"10", "1000", "100000"})
+  public int events;
+
+  @Param({"1", "20", "500"})
+  public int attendees;
+
+  @Param({"0", "0.5"})
+  public double optionalRatio;
+
+  @Param({"INTERVALS", "BITMAP", "FREE_TIMES"})
+  public FindMeetingQuery.Mode mode;
+
+  // 0 asks for every possible time; 3 is the usual "next few slots" call.
+  @Param({"0", "3"})
+  public int limit;
+
+  private Collection<Event> calendar;
+  private AttendeeIndex attendeeIndex;
+  private List<MeetingRequest> requests;
+  private FindMeetingQuery findMeetingQuery;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SyntheticCalendar syntheticCalendar = new SyntheticCalendar(SEED, events);
+    calendar = syntheticCalendar.getEvents();
+    attendeeIndex = AttendeeIndex.fromEvents(calendar);
+    requests =
+        syntheticCalendar.createRequests(REQUESTS, attendees, optionalRatio, DURATION_30_MINUTES);
+    for (MeetingRequest request : requests) {
+      request.setLimit(limit);
+    }
+    findMeetingQuery = new FindMeetingQuery(mode);
+  }
+
+  /**
+   * Cycles through the requests so that each invocation asks something different.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    MeetingRequest next(List<MeetingRequest> requests) {
+      MeetingRequest request = requests.get(next);
+      next = (next + 1) % requests.size();
+      return request;
+    }
+  }
+
+  /**
+   * Answers a request against an index built once, the way the servlets do.
+   */
+  @Benchmark
+  public Collection<TimeRange> query(Cursor cursor) {
+    return findMeetingQuery.query(attendeeIndex, cursor.next(requests));
+  }
+
+  /**
+   * Answers a request from the list of events, which indexes the events every time.
+   */
+  @Benchmark
+  public Collection<TimeRange> queryEvents(Cursor cursor) {
+    return findMeetingQuery.query(calendar, cursor.next(requests));
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how the {@code PARALLEL} mode of {@code FindMeetingQuery} scales with the number of
+ * threads of its pool, for all-hands style requests with hundreds of mandatory attendees. A
+ * parallelism of 1 is the baseline to compare the speedup against.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelQueryBenchmark {
+  private static final long SEED = 42;
+  private static final int REQUESTS = 64;
+  private static final long DURATION_30_MINUTES = 30;
+
+  @Param({"100000"})
+  public int events;
+
+  @Param({"200", "500"})
+  public int attendees;
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  @Param({"" + FindMeetingQuery.DEFAULT_PARALLEL_THRESHOLD})
+  public int threshold;
+
+  private AttendeeIndex attendeeIndex;
+  private List<MeetingRequest> requests;
+  private ForkJoinPool pool;
+  private FindMeetingQuery findMeetingQuery;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    SyntheticCalendar syntheticCalendar = new SyntheticCalendar(SEED, events);
+    attendeeIndex = AttendeeIndex.fromEvents(syntheticCalendar.getEvents());
+    requests = syntheticCalendar.createRequests(REQUESTS, attendees, 0, DURATION_30_MINUTES);
+    pool = new ForkJoinPool(parallelism);
+    findMeetingQuery = new FindMeetingQuery(FindMeetingQuery.Mode.PARALLEL, pool, threshold);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Collection<TimeRange> query() {
+    MeetingRequest request = requests.get(next);
+    next = (next + 1) % requests.size();
+    return findMeetingQuery.query(attendeeIndex, request);
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.Event;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates random calendars and meeting requests for the benchmarks. The same seed always
+ * generates the same calendar.
+ *
+ * <p>The number of people grows with the number of events, so that people have a few events each
+ * whatever the size of the calendar, and there are always enough people for the largest request.
+ */
+final class SyntheticCalendar {
+  private static final int ATTENDEES_PER_EVENT = 4;
+  private static final int EVENTS_PER_PERSON = 3;
+  private static final int MIN_PEOPLE = 1000;
+
+  // Events start on a quarter hour and last from 15 minutes to 2 hours.
+  private static final int SLOT = 15;
+  private static final int MAX_SLOTS_PER_EVENT = 8;
+
+  private final Random random;
+  private final int people;
+  private final List<Event> events;
+
+  /**
+   * Generates a calendar of {@code eventCount} events on day 0.
+   */
+  SyntheticCalendar(long seed, int eventCount) {
+    this.random = new Random(seed);
+    this.people = Math.max(MIN_PEOPLE, eventCount * ATTENDEES_PER_EVENT / EVENTS_PER_PERSON);
+    this.events = new ArrayList<>(eventCount);
+
+    int slotsPerDay = TimeRange.WHOLE_DAY.duration() / SLOT;
+    for (int i = 0; i < eventCount; i++) {
+      int slots = 1 + random.nextInt(MAX_SLOTS_PER_EVENT);
+      int start = SLOT * random.nextInt(slotsPerDay - slots + 1);
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, SLOT * slots),
+          pickPeople(ATTENDEES_PER_EVENT)));
+    }
+  }
+
+  /**
+   * Returns the events of this calendar.
+   */
+  List<Event> getEvents() {
+    return Collections.unmodifiableList(events);
+  }
+
+  /**
+   * Generates {@code count} requests of {@code attendees} people each, of whom about
+   * {@code optionalRatio} are optional. Every request has at least one mandatory attendee.
+   */
+  List<MeetingRequest> createRequests(int count, int attendees, double optionalRatio,
+      long duration) {
+    List<MeetingRequest> requests = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      List<String> guests = new ArrayList<>(pickPeople(attendees));
+      int optional = Math.min(attendees - 1, (int) Math.round(attendees * optionalRatio));
+      MeetingRequest request =
+          new MeetingRequest(guests.subList(optional, guests.size()), duration);
+      for (String guest : guests.subList(0, optional)) {
+        request.addOptionalAttendee(guest);
+      }
+      requests.add(request);
+    }
+    return requests;
+  }
+
+  private Set<String> pickPeople(int count) {
+    Set<String> picked = new LinkedHashSet<>();
+    while (picked.size() < count) {
+      picked.add("Person " + random.nextInt(people));
+    }
+    return picked;
+  }
+}
@@ -0,0 +1,116 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.sps.servlets.BatchQueryServlet;
+import com.google.sps.servlets.CalendarContextListener;
+import com.google.sps.servlets.EventsServlet;
+import com.google.sps.servlets.GetEventsServlet;
+import com.google.sps.servlets.QueryServlet;
+import com.google.sps.servlets.QueryStatsServlet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import javax.servlet.http.HttpServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * Runs the calendar webapp in an embedded Tomcat on a free local port. Only the listener and
+ * servlets are deployed, not the static pages.
+ */
+final class EmbeddedCalendarServer implements AutoCloseable {
+  // Kept so that the level isn't lost when the logger is garbage collected.
+  private static final Logger TOMCAT_LOGGER = Logger.getLogger("org.apache");
+
+  private final Tomcat tomcat;
+  private final Path baseDir;
+
+  private EmbeddedCalendarServer(Tomcat tomcat, Path baseDir) {
+    this.tomcat = tomcat;
+    this.baseDir = baseDir;
+  }
+
+  /**
+   * Starts the server. It is stopped again by {@link #close()}.
+   */
+  static EmbeddedCalendarServer start() throws IOException, LifecycleException {
+    TOMCAT_LOGGER.setLevel(Level.WARNING);
+
+    Path baseDir = Files.createTempDirectory("calendar-loadtest");
+    Tomcat tomcat = new Tomcat();
+    tomcat.setBaseDir(baseDir.toString());
+    tomcat.setPort(0);
+    // Creates the default HTTP connector.
+    tomcat.getConnector();
+
+    StandardContext context = (StandardContext) tomcat.addContext("", baseDir.toString());
+    // The webapp's classes are on the load test's class path rather than in a webapp class loader,
+    // so there is nothing for Tomcat's leak detection to clean up when it stops.
+    context.setClearReferencesObjectStreamClassCaches(false);
+    context.setClearReferencesRmiTargets(false);
+    context.setClearReferencesThreadLocals(false);
+    context.addApplicationListener(CalendarContextListener.class.getName());
+    addServlet(context, "/get-events", new GetEventsServlet());
+    addServlet(context, "/events", new EventsServlet());
+    addServlet(context, "/query", new QueryServlet());
+    addServlet(context, "/query/batch", new BatchQueryServlet());
+    addServlet(context, "/query/stats", new QueryStatsServlet());
+
+    EmbeddedCalendarServer server = new EmbeddedCalendarServer(tomcat, baseDir);
+    try {
+      tomcat.start();
+    } catch (LifecycleException e) {
+      server.close();
+      throw e;
+    }
+    return server;
+  }
+
+  /**
+   * Returns the URL the webapp is served at, without a trailing slash.
+   */
+  String getUrl() {
+    return "http://localhost:" + tomcat.getConnector().getLocalPort();
+  }
+
+  @Override
+  public void close() throws IOException, LifecycleException {
+    try {
+      try {
+        tomcat.stop();
+      } finally {
+        tomcat.destroy();
+      }
+    } finally {
+      try (Stream<Path> paths = Files.walk(baseDir)) {
+        for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  private static void addServlet(Context context, String pattern, HttpServlet servlet) {
+    Tomcat.addServlet(context, pattern, servlet);
+    context.addServletMappingDecoded(pattern, pattern);
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.sps.loadtest.RequestMix.Kind;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the outcome of every request sent while measuring. Latencies are only kept for
+ * requests that succeeded; failed ones are counted as errors.
+ */
+final class LatencyRecorder {
+  private static final double NANOS_PER_MILLI = 1e6;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /**
+   * The results of one kind of request, or of all of them, in the form they are reported.
+   */
+  static final class Summary {
+    long requests;
+    long errors;
+    double errorRate;
+    double throughput;
+    Map<String, Double> latencyMillis;
+  }
+
+  private static final class Samples {
+    long[] latencies = new long[1024];
+    int count;
+    long errors;
+
+    void add(long latency) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = latency;
+    }
+  }
+
+  private final Map<Kind, Samples> samples = new EnumMap<>(Kind.class);
+
+  /**
+   * Records one request that took {@code latencyNanos} from when it was due to be sent until its
+   * response was read.
+   */
+  synchronized void record(Kind kind, long latencyNanos, boolean succeeded) {
+    Samples kindSamples = samples.computeIfAbsent(kind, unused -> new Samples());
+    if (succeeded) {
+      kindSamples.add(latencyNanos);
+    } else {
+      kindSamples.errors++;
+    }
+  }
+
+  /**
+   * Summarizes each kind of request, in the order of {@link Kind}, then all of them under
+   * {@code "total"}. Throughput is counted in successful requests per second over
+   * {@code elapsedNanos}.
+   */
+  synchronized Map<String, Summary> summarize(long elapsedNanos) {
+    Map<String, Summary> summaries = new LinkedHashMap<>();
+    Samples total = new Samples();
+    for (Map.Entry<Kind, Samples> entry : samples.entrySet()) {
+      Samples kindSamples = entry.getValue();
+      summaries.put(entry.getKey().toString(), summarize(kindSamples, elapsedNanos));
+      for (int i = 0; i < kindSamples.count; i++) {
+        total.add(kindSamples.latencies[i]);
+      }
+      total.errors += kindSamples.errors;
+    }
+    summaries.put("total", summarize(total, elapsedNanos));
+    return summaries;
+  }
+
+  private static Summary summarize(Samples samples, long elapsedNanos) {
+    long[] sorted = Arrays.copyOf(samples.latencies, samples.count);
+    Arrays.sort(sorted);
+
+    Summary summary = new Summary();
+    summary.requests = samples.count + samples.errors;
+    summary.errors = samples.errors;
+    summary.errorRate = summary.requests == 0 ? 0 : (double) summary.errors / summary.requests;
+    summary.throughput = samples.count * NANOS_PER_SECOND / elapsedNanos;
+    summary.latencyMillis = new LinkedHashMap<>();
+    if (sorted.length > 0) {
+      summary.latencyMillis.put("p50", millis(percentile(sorted, 50)));
+      summary.latencyMillis.put("p95", millis(percentile(sorted, 95)));
+      summary.latencyMillis.put("p99", millis(percentile(sorted, 99)));
+      summary.latencyMillis.put("max", millis(sorted[sorted.length - 1]));
+      summary.latencyMillis.put("mean", millis(Arrays.stream(sorted).average().getAsDouble()));
+    }
+    return summary;
+  }
+
+  /**
+   * Returns the nearest-rank percentile of a sorted, non-empty array.
+   */
+  private static long percentile(long[] sorted, double percent) {
+    int rank = (int) Math.ceil(percent / 100 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static double millis(double nanos) {
+    return Math.round(nanos / NANOS_PER_MILLI * 1000) / 1000.0;
+  }
+}
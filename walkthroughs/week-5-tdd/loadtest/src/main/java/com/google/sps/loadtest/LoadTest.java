@@ -0,0 +1,227 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.sps.CalendarJson;
+import com.google.sps.Event;
+import com.google.sps.loadtest.RequestMix.Request;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends a mix of requests to the calendar webapp at a fixed rate and reports the latency,
+ * throughput and error rate of each kind of request as JSON.
+ *
+ * <p>Requests are sent on a fixed schedule whatever the server's speed, and each latency is
+ * measured from when its request was due rather than from when a client got around to sending it.
+ * A server that falls behind therefore shows up as higher latencies instead of a lower request
+ * rate.
+ *
+ * <p>Options are given as {@code --name=value}:
+ *
+ * <ul>
+ *   <li>{@code rate}: requests per second, 100 by default.
+ *   <li>{@code duration}: seconds to measure for, 30 by default.
+ *   <li>{@code warmup}: seconds to send requests for before measuring, 10 by default.
+ *   <li>{@code threads}: the most requests in flight at once, 16 by default.
+ *   <li>{@code mix}: the weight of each kind of request, {@code query:70,events:20,window:10} by
+ *       default. The kinds are {@code query}, {@code horizon}, {@code events} and {@code window}.
+ *   <li>{@code seed}: seeds the generated requests, 1 by default.
+ *   <li>{@code url}: a server that is already running. By default the webapp is started in an
+ *       embedded Tomcat.
+ *   <li>{@code event-log}: the event log the embedded webapp keeps its events in. By default it
+ *       only has the sample events.
+ *   <li>{@code output}: the file to write the report to. By default it is printed.
+ * </ul>
+ */
+public final class LoadTest {
+  private static final int TIMEOUT_MILLIS = 10_000;
+  private static final Gson REPORT_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  private final String url;
+  private final RequestMix mix;
+  private final int rate;
+  private final int threads;
+
+  private LoadTest(String url, RequestMix mix, int rate, int threads) {
+    this.url = url;
+    this.mix = mix;
+    this.rate = rate;
+    this.threads = threads;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    int rate = Integer.parseInt(options.getOrDefault("rate", "100"));
+    int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+    int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+    long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+    RequestMix mix = RequestMix.parse(options.getOrDefault("mix", "query:70,events:20,window:10"));
+    if (rate <= 0 || duration <= 0 || warmup < 0 || threads <= 0) {
+      throw new IllegalArgumentException(
+          "rate, duration and threads must be positive, and warmup cannot be negative");
+    }
+
+    // Lets every client thread keep its connection open between requests.
+    System.setProperty("http.maxConnections", Integer.toString(threads));
+    if (options.containsKey("event-log")) {
+      System.setProperty("calendar.eventLog", options.get("event-log"));
+    }
+
+    EmbeddedCalendarServer server = null;
+    String url = options.get("url");
+    if (url == null) {
+      server = EmbeddedCalendarServer.start();
+      url = server.getUrl();
+    }
+    try {
+      LoadTest loadTest = new LoadTest(url, mix, rate, threads);
+      RequestMix.Schedule schedule = mix.newSchedule(loadTest.fetchEvents(), seed);
+      loadTest.run(schedule, TimeUnit.SECONDS.toNanos(warmup), new LatencyRecorder());
+
+      LatencyRecorder recorder = new LatencyRecorder();
+      long elapsed = loadTest.run(schedule, TimeUnit.SECONDS.toNanos(duration), recorder);
+
+      Map<String, Object> report = new LinkedHashMap<>();
+      report.put("url", url);
+      report.put("rate", rate);
+      report.put("durationSeconds", duration);
+      report.put("warmupSeconds", warmup);
+      report.put("threads", threads);
+      report.put("seed", seed);
+      report.put("mix", mix.getWeights());
+      report.put("elapsedSeconds", elapsed / 1e9);
+      report.put("results", recorder.summarize(elapsed));
+      writeReport(report, options.get("output"));
+    } finally {
+      if (server != null) {
+        server.close();
+      }
+    }
+  }
+
+  /**
+   * Fetches the whole calendar, which the requests are generated from.
+   */
+  private List<Event> fetchEvents() throws IOException {
+    HttpURLConnection connection = open("/get-events");
+    if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException("Could not fetch the events: HTTP " + connection.getResponseCode());
+    }
+    try (Reader reader = new InputStreamReader(
+        connection.getInputStream(), StandardCharsets.UTF_8)) {
+      return CalendarJson.GSON.fromJson(reader, new TypeToken<List<Event>>() {}.getType());
+    }
+  }
+
+  /**
+   * Sends requests from {@code schedule} for {@code durationNanos}, waits for them all to finish
+   * and returns how long that took.
+   */
+  private long run(RequestMix.Schedule schedule, long durationNanos, LatencyRecorder recorder)
+      throws InterruptedException {
+    ExecutorService clients = Executors.newFixedThreadPool(threads);
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    for (long i = 0; i * interval < durationNanos; i++) {
+      long due = start + i * interval;
+      for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+        LockSupport.parkNanos(wait);
+      }
+      Request request = schedule.next();
+      clients.execute(() -> send(request, due, recorder));
+    }
+    clients.shutdown();
+    clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    return System.nanoTime() - start;
+  }
+
+  private void send(Request request, long due, LatencyRecorder recorder) {
+    boolean succeeded;
+    try {
+      HttpURLConnection connection = open(request.path);
+      if (request.body != null) {
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream body = connection.getOutputStream()) {
+          body.write(request.body);
+        }
+      }
+      int status = connection.getResponseCode();
+      succeeded = status < HttpURLConnection.HTTP_BAD_REQUEST;
+      // Reads the whole response so that the connection can be reused.
+      try (InputStream response =
+          succeeded ? connection.getInputStream() : connection.getErrorStream()) {
+        if (response != null) {
+          byte[] buffer = new byte[8192];
+          while (response.read(buffer) != -1) {}
+        }
+      }
+    } catch (IOException e) {
+      succeeded = false;
+    }
+    recorder.record(request.kind, System.nanoTime() - due, succeeded);
+  }
+
+  private HttpURLConnection open(String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+    connection.setConnectTimeout(TIMEOUT_MILLIS);
+    connection.setReadTimeout(TIMEOUT_MILLIS);
+    return connection;
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      options.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    return options;
+  }
+
+  private static void writeReport(Map<String, Object> report, String output) throws IOException {
+    if (output == null) {
+      System.out.println(REPORT_GSON.toJson(report));
+      return;
+    }
+    try (Writer writer = Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+      REPORT_GSON.toJson(report, writer);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.loadtest;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.sps.CalendarJson;
+import com.google.sps.EpochRange;
+import com.google.sps.Event;
+import com.google.sps.MeetingRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The kinds of request the load test sends and how often each is sent. Requests are generated from
+ * the events the server holds, so that queries ask about people who are actually busy.
+ */
+final class RequestMix {
+  /**
+   * A kind of request, named as it is in the {@code --mix} option and in the report.
+   */
+  enum Kind {
+    // A single-day meeting request to /query.
+    QUERY("query"),
+    // A meeting request to /query with a horizon over every day that has events.
+    HORIZON("horizon"),
+    // The whole calendar from /get-events.
+    EVENTS("events"),
+    // The events in a few hours of one day from /get-events.
+    WINDOW("window");
+
+    private final String name;
+
+    Kind(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+
+    static Kind named(String name) {
+      for (Kind kind : values()) {
+        if (kind.name.equals(name)) {
+          return kind;
+        }
+      }
+      throw new IllegalArgumentException("Unknown request kind: " + name);
+    }
+  }
+
+  /**
+   * One HTTP request. Requests with a body are POSTs, the others are GETs.
+   */
+  static final class Request {
+    final Kind kind;
+    final String path;
+    final byte[] body;
+
+    Request(Kind kind, String path, byte[] body) {
+      this.kind = kind;
+      this.path = path;
+      this.body = body;
+    }
+  }
+
+  // Each kind cycles through this many generated requests.
+  private static final int REQUESTS_PER_KIND = 1000;
+
+  private static final int MAX_ATTENDEES = 5;
+  private static final int MAX_OPTIONAL_ATTENDEES = 2;
+  private static final int[] DURATIONS = {15, 30, 60, 90};
+  private static final int WINDOW_HOURS = 4;
+
+  private final Map<Kind, Integer> weights;
+
+  private RequestMix(Map<Kind, Integer> weights) {
+    this.weights = weights;
+  }
+
+  /**
+   * Parses a mix such as {@code query:70,events:20,window:10}. Each kind is sent in proportion to
+   * its weight, and kinds that aren't listed aren't sent.
+   */
+  static RequestMix parse(String mix) {
+    Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+    for (String part : mix.split(",")) {
+      String[] nameAndWeight = part.trim().split(":");
+      if (nameAndWeight.length != 2) {
+        throw new IllegalArgumentException("Expected kind:weight but got " + part);
+      }
+      int weight = Integer.parseInt(nameAndWeight[1].trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("Weights cannot be negative: " + part);
+      }
+      if (weight > 0) {
+        weights.put(Kind.named(nameAndWeight[0].trim()), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("The mix must send at least one kind of request");
+    }
+    return new RequestMix(weights);
+  }
+
+  /**
+   * Returns the weight of each kind that is sent.
+   */
+  Map<Kind, Integer> getWeights() {
+    return Collections.unmodifiableMap(weights);
+  }
+
+  /**
+   * Returns a schedule that generates requests about {@code events}. The same seed and events
+   * always give the same requests in the same order.
+   */
+  Schedule newSchedule(List<Event> events, long seed) {
+    return new Schedule(events, seed);
+  }
+
+  /**
+   * An endless, deterministic sequence of requests that follows the mix. Not thread-safe.
+   */
+  final class Schedule {
+    private final Random random;
+    private final Kind[] kinds;
+    private final int totalWeight;
+    private final Map<Kind, List<Request>> requests = new EnumMap<>(Kind.class);
+    private final Map<Kind, Integer> next = new EnumMap<>(Kind.class);
+
+    private Schedule(List<Event> events, long seed) {
+      this.random = new Random(seed);
+      this.kinds = weights.keySet().toArray(new Kind[0]);
+      this.totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+
+      Set<String> peopleSet = new LinkedHashSet<>();
+      long firstDay = Long.MAX_VALUE;
+      long lastDay = Long.MIN_VALUE;
+      for (Event event : events) {
+        peopleSet.addAll(event.getAttendees());
+        firstDay = Math.min(firstDay, event.getDay());
+        lastDay = Math.max(lastDay, event.getDay());
+      }
+      if (peopleSet.isEmpty()) {
+        throw new IllegalArgumentException("The calendar has no attendees to ask about");
+      }
+      List<String> people = new ArrayList<>(peopleSet);
+
+      for (Kind kind : kinds) {
+        List<Request> generated = new ArrayList<>(REQUESTS_PER_KIND);
+        for (int i = 0; i < REQUESTS_PER_KIND; i++) {
+          generated.add(generate(kind, people, firstDay, lastDay));
+        }
+        requests.put(kind, generated);
+        next.put(kind, 0);
+      }
+    }
+
+    /**
+     * Returns the next request.
+     */
+    Request next() {
+      int pick = random.nextInt(totalWeight);
+      Kind kind = kinds[kinds.length - 1];
+      for (Kind candidate : kinds) {
+        pick -= weights.get(candidate);
+        if (pick < 0) {
+          kind = candidate;
+          break;
+        }
+      }
+      int position = next.get(kind);
+      next.put(kind, (position + 1) % REQUESTS_PER_KIND);
+      return requests.get(kind).get(position);
+    }
+
+    private Request generate(Kind kind, List<String> people, long firstDay, long lastDay) {
+      switch (kind) {
+        case QUERY:
+          return post(kind, newMeetingRequest(people, null));
+        case HORIZON:
+          EpochRange horizon = EpochRange.fromStartEnd(firstDay * EpochRange.MINUTES_PER_DAY,
+              (lastDay + 1) * EpochRange.MINUTES_PER_DAY, false);
+          return post(kind, newMeetingRequest(people, horizon));
+        case EVENTS:
+          return new Request(kind, "/get-events", null);
+        case WINDOW:
+          long day = firstDay + (long) (random.nextDouble() * (lastDay - firstDay + 1));
+          long start = day * EpochRange.MINUTES_PER_DAY
+              + 60 * random.nextInt(24 - WINDOW_HOURS + 1);
+          long end = start + 60 * WINDOW_HOURS;
+          return new Request(kind, "/get-events?start=" + start + "&end=" + end, null);
+        default:
+          throw new AssertionError(kind);
+      }
+    }
+
+    private MeetingRequest newMeetingRequest(List<String> people, EpochRange horizon) {
+      List<String> attendees = pick(people, 1 + random.nextInt(MAX_ATTENDEES));
+      long duration = DURATIONS[random.nextInt(DURATIONS.length)];
+      MeetingRequest request = horizon == null
+          ? new MeetingRequest(attendees, duration)
+          : new MeetingRequest(attendees, duration, horizon);
+      for (String optional : pick(people, random.nextInt(MAX_OPTIONAL_ATTENDEES + 1))) {
+        request.addOptionalAttendee(optional);
+      }
+      return request;
+    }
+
+    private List<String> pick(List<String> people, int count) {
+      Set<String> picked = new LinkedHashSet<>();
+      count = Math.min(count, people.size());
+      while (picked.size() < count) {
+        picked.add(people.get(random.nextInt(people.size())));
+      }
+      return new ArrayList<>(picked);
+    }
+  }
+
+  private static Request post(Kind kind, MeetingRequest request) {
+    return new Request(kind, "/query", CalendarJson.GSON.toJson(request).getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,136 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every attendee name a dense int id, starting from 0 in the order names are first seen.
+ * Events keep the ids of their attendees instead of the names, so that each name is stored once
+ * and checking whether someone attends an event doesn't hash strings.
+ *
+ * <p>Ids are never reused or forgotten, so the dictionary grows with the number of distinct names
+ * the app has seen. Looking up names and ids is lock-free; only adding a new name takes a lock.
+ */
+public final class AttendeeDictionary {
+  /** The id returned by {@link #find} for names that have no id. */
+  public static final int NO_ID = -1;
+
+  private static final AttendeeDictionary GLOBAL = new AttendeeDictionary();
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+  // Written only while holding the lock on this dictionary. An id is put in {@code ids} only after
+  // its name is in the array, so any id a reader can find is already in the array it sees.
+  private volatile String[] names = new String[16];
+  private int size;
+
+  AttendeeDictionary() {}
+
+  /**
+   * Returns the dictionary that events intern their attendees in.
+   */
+  public static AttendeeDictionary global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Returns the id of {@code name}, giving it the next id if it doesn't have one yet.
+   */
+  public int intern(String name) {
+    Integer id = ids.get(name);
+    if (id != null) {
+      return id;
+    }
+
+    synchronized (this) {
+      id = ids.get(name);
+      if (id != null) {
+        return id;
+      }
+
+      String[] current = names;
+      if (size == current.length) {
+        current = Arrays.copyOf(current, 2 * current.length);
+      }
+      current[size] = name;
+      names = current;
+      ids.put(name, size);
+      return size++;
+    }
+  }
+
+  /**
+   * Returns the id of {@code name}, or {@link #NO_ID} if it doesn't have one. Unlike
+   * {@link #intern}, this never adds the name.
+   */
+  public int find(String name) {
+    Integer id = ids.get(name);
+    return id == null ? NO_ID : id;
+  }
+
+  /**
+   * Returns the name with the given id.
+   */
+  public String nameOf(int id) {
+    String[] current = names;
+    if (id < 0 || id >= current.length || current[id] == null) {
+      throw new IllegalArgumentException("no attendee has id " + id);
+    }
+    return current[id];
+  }
+
+  /**
+   * Interns every name and returns the ids, sorted and without duplicates.
+   */
+  int[] internAll(Collection<String> names) {
+    int[] ids = new int[names.size()];
+    int count = 0;
+    for (String name : names) {
+      ids[count++] = intern(name);
+    }
+    return sortedUnique(ids, count);
+  }
+
+  /**
+   * Returns the ids of the names that have one, sorted and without duplicates. Names without an id
+   * are not in any event, so they can be left out of checks against events.
+   */
+  int[] findAll(Collection<String> names) {
+    int[] ids = new int[names.size()];
+    int count = 0;
+    for (String name : names) {
+      int id = find(name);
+      if (id != NO_ID) {
+        ids[count++] = id;
+      }
+    }
+    return sortedUnique(ids, count);
+  }
+
+  private static int[] sortedUnique(int[] ids, int count) {
+    Arrays.sort(ids, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || ids[i] != ids[unique - 1]) {
+        ids[unique++] = ids[i];
+      }
+    }
+    return unique == ids.length ? ids : Arrays.copyOf(ids, unique);
+  }
+}
@@ -0,0 +1,236 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An inverted index from each attendee to the times they are busy on day 0, the day single-day
+ * queries look at. Building it walks every event once, after which a meeting query only has to look
+ * at the busy times of the people it asks about instead of every event in the calendar.
+ *
+ * <p>Each attendee that is asked about also gets a {@code FreeTimeTracker}, built from their busy
+ * times on first use, that keeps their free times up to date as events are added and removed, so
+ * queries can intersect free times without sweeping busy times.
+ *
+ * <p>Reads never block. Each attendee's busy times are kept as a packed list sorted by start time
+ * that is never changed once published, and writes replace that list with an updated copy, so
+ * readers always see a consistent list.
+ */
+public final class AttendeeIndex {
+  private static final TimeRangeList NOT_BUSY = new TimeRangeList();
+  private static final TimeRangeList FREE_ALL_DAY = new FreeTimeTracker().getFreeTimes();
+
+  private final Map<String, TimeRangeList> busyTimes = new ConcurrentHashMap<>();
+
+  // Built lazily from {@code busyTimes} and dropped whenever the attendee's busy times change.
+  private final Map<String, DayBitmap> busyBitmaps = new ConcurrentHashMap<>();
+
+  // Built lazily from {@code busyTimes} and then kept up to date by {@code add} and {@code remove}.
+  // Writers change an attendee's busy times while holding their entry here, so a tracker is never
+  // built from busy times that a write is about to replace without that write seeing it.
+  private final Map<String, FreeTimeTracker> freeTimeTrackers = new ConcurrentHashMap<>();
+
+  // A stamp per attendee that is given a new, never before used value whenever their busy times
+  // change. Attendees whose busy times never changed have version 0.
+  private final Map<String, Long> versions = new ConcurrentHashMap<>();
+  private final AtomicLong lastVersion = new AtomicLong();
+
+  /**
+   * Creates an index over the given events. Events on days other than day 0 are left out.
+   *
+   * @param events The events to index. Must be non-null.
+   */
+  public static AttendeeIndex fromEvents(Collection<Event> events) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null");
+    }
+
+    // Group first and sort each list once, rather than inserting every event in order.
+    Map<String, TimeRangeList> grouped = new HashMap<>();
+    for (Event event : events) {
+      if (event.getDay() != 0) {
+        continue;
+      }
+      TimeRange when = event.getWhen();
+      for (String attendee : event.getAttendees()) {
+        grouped.computeIfAbsent(attendee, key -> new TimeRangeList()).add(when.start(), when.end());
+      }
+    }
+    return fromGroupedBusyTimes(grouped);
+  }
+
+  /**
+   * Creates an index over the given events that only holds the busy times of {@code attendees}.
+   * Events none of them attend are skipped after comparing attendee ids, so a single query doesn't
+   * pay for indexing everyone else in the calendar. Events on days other than day 0 are left out.
+   *
+   * @param events The events to index. Must be non-null.
+   * @param attendees The attendees whose busy times are kept. Must be non-null.
+   */
+  public static AttendeeIndex fromEvents(Collection<Event> events, Collection<String> attendees) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null");
+    }
+
+    if (attendees == null) {
+      throw new IllegalArgumentException("attendees cannot be null");
+    }
+
+    // Attendees missing from the dictionary attend no event, so they are free all day.
+    AttendeeDictionary dictionary = AttendeeDictionary.global();
+    int[] ids = dictionary.findAll(attendees);
+    Map<String, TimeRangeList> grouped = new HashMap<>();
+    for (Event event : events) {
+      if (event.getDay() != 0 || !event.hasAnyAttendee(ids)) {
+        continue;
+      }
+      TimeRange when = event.getWhen();
+      for (int id : ids) {
+        if (event.hasAttendee(id)) {
+          grouped.computeIfAbsent(dictionary.nameOf(id), key -> new TimeRangeList())
+              .add(when.start(), when.end());
+        }
+      }
+    }
+    return fromGroupedBusyTimes(grouped);
+  }
+
+  private static AttendeeIndex fromGroupedBusyTimes(Map<String, TimeRangeList> grouped) {
+    AttendeeIndex index = new AttendeeIndex();
+    for (Map.Entry<String, TimeRangeList> entry : grouped.entrySet()) {
+      TimeRangeList times = entry.getValue();
+      times.sort();
+      index.busyTimes.put(entry.getKey(), times);
+    }
+    return index;
+  }
+
+  /**
+   * Returns a read-only list of the times {@code attendee} is busy, sorted by start time. The list
+   * is empty if the attendee has no events.
+   */
+  public List<TimeRange> getBusyTimes(String attendee) {
+    return Collections.unmodifiableList(getBusyTimeList(attendee).toTimeRanges());
+  }
+
+  /**
+   * Returns the packed times {@code attendee} is busy, sorted by start time. The list is shared
+   * between callers and must not be changed.
+   */
+  TimeRangeList getBusyTimeList(String attendee) {
+    TimeRangeList times = busyTimes.get(attendee);
+    return times == null ? NOT_BUSY : times;
+  }
+
+  /**
+   * Returns a read-only list of the times {@code attendee} is free, sorted by start time.
+   */
+  public List<TimeRange> getFreeTimes(String attendee) {
+    return Collections.unmodifiableList(getFreeTimeList(attendee).toTimeRanges());
+  }
+
+  /**
+   * Returns the packed times {@code attendee} is free, sorted by start time. The list is shared
+   * between callers and must not be changed.
+   */
+  TimeRangeList getFreeTimeList(String attendee) {
+    if (!busyTimes.containsKey(attendee)) {
+      return FREE_ALL_DAY;
+    }
+    return freeTimeTrackers.computeIfAbsent(
+        attendee, key -> FreeTimeTracker.fromBusyTimes(getBusyTimeList(key))).getFreeTimes();
+  }
+
+  /**
+   * Returns the minutes of the day {@code attendee} is busy. The bitmap is shared between callers
+   * and must not be changed; use {@link DayBitmap#copy} to get one that can be.
+   */
+  public DayBitmap getBusyBitmap(String attendee) {
+    return busyBitmaps.computeIfAbsent(
+        attendee, key -> DayBitmap.fromRangeList(getBusyTimeList(key)));
+  }
+
+  /**
+   * Returns a stamp that changes every time the busy times of {@code attendee} change, so a result
+   * computed from their busy times is still valid as long as the stamp is the same.
+   */
+  public long getVersion(String attendee) {
+    return versions.getOrDefault(attendee, 0L);
+  }
+
+  /**
+   * Adds the time of {@code event} to the busy times of each of its attendees. Events on days other
+   * than day 0 are ignored.
+   */
+  public synchronized void add(Event event) {
+    if (event.getDay() != 0) {
+      return;
+    }
+
+    TimeRange when = event.getWhen();
+    for (String attendee : event.getAttendees()) {
+      TimeRangeList times = getBusyTimeList(attendee).copy();
+      times.insertSorted(when.start(), when.end());
+      freeTimeTrackers.compute(attendee, (key, tracker) -> {
+        busyTimes.put(key, times);
+        if (tracker != null) {
+          tracker.add(when.start(), when.end());
+        }
+        return tracker;
+      });
+      busyBitmaps.remove(attendee);
+      versions.put(attendee, lastVersion.incrementAndGet());
+    }
+  }
+
+  /**
+   * Removes the time of {@code event} from the busy times of each of its attendees. Only one
+   * occurrence is removed, so other events at the same time keep their attendees busy.
+   */
+  public synchronized void remove(Event event) {
+    if (event.getDay() != 0) {
+      return;
+    }
+
+    TimeRange when = event.getWhen();
+    for (String attendee : event.getAttendees()) {
+      TimeRangeList times = getBusyTimeList(attendee).copy();
+      if (!times.remove(when.start(), when.end())) {
+        continue;
+      }
+
+      freeTimeTrackers.compute(attendee, (key, tracker) -> {
+        if (times.isEmpty()) {
+          busyTimes.remove(key);
+          return null;
+        }
+        busyTimes.put(key, times);
+        if (tracker != null) {
+          tracker.remove(when.start(), when.end());
+        }
+        return tracker;
+      });
+      busyBitmaps.remove(attendee);
+      versions.put(attendee, lastVersion.incrementAndGet());
+    }
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The JSON form of the calendar's classes, written and read by hand instead of by reflection. The
+ * JSON is the same as Gson's reflective form, so the page's script reads it the same way.
+ *
+ * <p>{@link #GSON} is thread-safe and meant to be shared by all servlets.
+ */
+public final class CalendarJson {
+  /** A Gson with the adapters below registered. */
+  public static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapter(TimeRange.class, new TimeRangeAdapter().nullSafe())
+      .registerTypeAdapter(EpochRange.class, new EpochRangeAdapter().nullSafe())
+      .registerTypeAdapter(Event.class, new EventAdapter().nullSafe())
+      .create();
+
+  private CalendarJson() {}
+
+  /**
+   * Writes {@code elements} to {@code writer} as a JSON array, one at a time as the iterator hands
+   * them out. Pass {@code stream.iterator()} to pipe a lazy stream, such as
+   * {@code FindMeetingQuery.stream}, into the writer without collecting it first.
+   */
+  public static <T> void writeArray(JsonWriter writer, Class<T> type, Iterator<? extends T> elements)
+      throws IOException {
+    TypeAdapter<T> adapter = GSON.getAdapter(type);
+    writer.beginArray();
+    while (elements.hasNext()) {
+      adapter.write(writer, elements.next());
+    }
+    writer.endArray();
+  }
+
+  /**
+   * Writes a time range as {@code {"start":480,"duration":30}}.
+   */
+  static final class TimeRangeAdapter extends TypeAdapter<TimeRange> {
+    @Override
+    public void write(JsonWriter out, TimeRange range) throws IOException {
+      out.beginObject();
+      out.name("start").value(range.start());
+      out.name("duration").value(range.duration());
+      out.endObject();
+    }
+
+    @Override
+    public TimeRange read(JsonReader in) throws IOException {
+      int start = 0;
+      int duration = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "start":
+            start = in.nextInt();
+            break;
+          case "duration":
+            duration = in.nextInt();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return TimeRange.fromStartDuration(start, duration);
+    }
+  }
+
+  /**
+   * Writes an epoch range the same way as a time range, in minutes since the epoch.
+   */
+  static final class EpochRangeAdapter extends TypeAdapter<EpochRange> {
+    @Override
+    public void write(JsonWriter out, EpochRange range) throws IOException {
+      out.beginObject();
+      out.name("start").value(range.start());
+      out.name("duration").value(range.duration());
+      out.endObject();
+    }
+
+    @Override
+    public EpochRange read(JsonReader in) throws IOException {
+      long start = 0;
+      long duration = 0;
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "start":
+            start = in.nextLong();
+            break;
+          case "duration":
+            duration = in.nextLong();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return EpochRange.fromStartDuration(start, duration);
+    }
+  }
+
+  /**
+   * Writes an event as its title, day, time of day and the names of its attendees.
+   */
+  static final class EventAdapter extends TypeAdapter<Event> {
+    private final TimeRangeAdapter timeRangeAdapter = new TimeRangeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Event event) throws IOException {
+      out.beginObject();
+      out.name("title").value(event.getTitle());
+      out.name("day").value(event.getDay());
+      out.name("when");
+      timeRangeAdapter.write(out, event.getWhen());
+      out.name("attendees").beginArray();
+      for (String attendee : event.getAttendees()) {
+        out.value(attendee);
+      }
+      out.endArray();
+      out.endObject();
+    }
+
+    @Override
+    public Event read(JsonReader in) throws IOException {
+      String title = null;
+      long day = 0;
+      TimeRange when = null;
+      List<String> attendees = new ArrayList<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "title":
+            title = in.nextString();
+            break;
+          case "day":
+            day = in.nextLong();
+            break;
+          case "when":
+            when = timeRangeAdapter.read(in);
+            break;
+          case "attendees":
+            in.beginArray();
+            while (in.hasNext()) {
+              attendees.add(in.nextString());
+            }
+            in.endArray();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Event(title, day, when, attendees);
+    }
+  }
+}
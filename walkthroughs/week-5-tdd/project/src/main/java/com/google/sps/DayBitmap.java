@@ -0,0 +1,231 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of minutes of the day, stored as one bit per minute. A whole day fits in 23 {@code long}
+ * words, so combining the busy times of many people is a handful of word-wide {@code or}s instead
+ * of allocating and splitting {@code TimeRange}s.
+ *
+ * <p>Ranges of no length set no minute, but no meeting can run across them, so the bitmap also
+ * keeps the times they fall at as splits. Runs of set minutes are broken at every split, which
+ * gives the same times as the sweep over busy times in {@code FindMeetingQuery}.
+ */
+public final class DayBitmap {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+  private static final int WORD_COUNT = (MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+  // The bits past the end of the day in the last word. These must always stay clear.
+  private static final long LAST_WORD_MASK = -1L >>> (WORD_COUNT * Long.SIZE - MINUTES_PER_DAY);
+
+  private final long[] words = new long[WORD_COUNT];
+
+  // Bit t is set if runs are broken between minute t - 1 and minute t. Bit 0 is never set.
+  private final long[] splits = new long[WORD_COUNT];
+
+  /**
+   * Creates a bitmap with every minute of the given ranges set. Parts of a range outside of the day
+   * are ignored.
+   */
+  public static DayBitmap fromRanges(Collection<TimeRange> ranges) {
+    DayBitmap bitmap = new DayBitmap();
+    for (TimeRange range : ranges) {
+      bitmap.set(range);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Creates a bitmap with every minute of the given packed ranges set.
+   */
+  static DayBitmap fromRangeList(TimeRangeList ranges) {
+    DayBitmap bitmap = new DayBitmap();
+    for (int i = 0; i < ranges.size(); i++) {
+      bitmap.set(ranges.start(i), ranges.end(i));
+    }
+    return bitmap;
+  }
+
+  /**
+   * Sets every minute of {@code range}. Parts of the range outside of the day are ignored. A range
+   * of no length inside the day sets no minute but splits runs at its start.
+   */
+  public void set(TimeRange range) {
+    set(range.start(), range.end());
+  }
+
+  private void set(int rangeStart, int rangeEnd) {
+    int start = Math.max(rangeStart, 0);
+    int end = Math.min(rangeEnd, MINUTES_PER_DAY);
+    if (rangeStart == rangeEnd && start > 0 && start < MINUTES_PER_DAY) {
+      splits[start / Long.SIZE] |= 1L << start;
+      return;
+    }
+    if (start >= end) {
+      return;
+    }
+
+    int firstWord = start / Long.SIZE;
+    int lastWord = (end - 1) / Long.SIZE;
+    long firstMask = -1L << start;
+    long lastMask = -1L >>> -end;
+
+    if (firstWord == lastWord) {
+      words[firstWord] |= firstMask & lastMask;
+      return;
+    }
+
+    words[firstWord] |= firstMask;
+    Arrays.fill(words, firstWord + 1, lastWord, -1L);
+    words[lastWord] |= lastMask;
+  }
+
+  /**
+   * Returns whether {@code minute} is set.
+   */
+  public boolean get(int minute) {
+    if (minute < 0 || minute >= MINUTES_PER_DAY) {
+      return false;
+    }
+    return (words[minute / Long.SIZE] & (1L << minute)) != 0;
+  }
+
+  /**
+   * Sets every minute that is set in {@code other}, and takes on its splits.
+   */
+  public void or(DayBitmap other) {
+    for (int i = 0; i < WORD_COUNT; i++) {
+      words[i] |= other.words[i];
+      splits[i] |= other.splits[i];
+    }
+  }
+
+  /**
+   * Clears every minute that is not set in {@code other}, and takes on its splits.
+   */
+  public void and(DayBitmap other) {
+    for (int i = 0; i < WORD_COUNT; i++) {
+      words[i] &= other.words[i];
+      splits[i] |= other.splits[i];
+    }
+  }
+
+  /**
+   * Flips every minute of the day, turning busy minutes into free minutes and back. The splits
+   * stay where they are.
+   */
+  public void flip() {
+    for (int i = 0; i < WORD_COUNT; i++) {
+      words[i] = ~words[i];
+    }
+    words[WORD_COUNT - 1] &= LAST_WORD_MASK;
+  }
+
+  /**
+   * Returns a copy of this bitmap that can be changed independently.
+   */
+  public DayBitmap copy() {
+    DayBitmap copy = new DayBitmap();
+    System.arraycopy(words, 0, copy.words, 0, WORD_COUNT);
+    System.arraycopy(splits, 0, copy.splits, 0, WORD_COUNT);
+    return copy;
+  }
+
+  /**
+   * Converts the runs of set minutes back to ranges, ordered by start time, breaking runs at every
+   * split. Runs shorter than {@code minimumDuration} are left out.
+   */
+  public List<TimeRange> toRanges(long minimumDuration) {
+    return toRangeList(minimumDuration).toTimeRanges();
+  }
+
+  /**
+   * Converts the runs of set minutes to packed ranges, like {@link #toRanges}.
+   */
+  TimeRangeList toRangeList(long minimumDuration) {
+    TimeRangeList ranges = new TimeRangeList();
+    int minute = nextSetMinute(0);
+    while (minute < MINUTES_PER_DAY) {
+      int end = Math.min(nextClearMinute(minute), nextSetBit(splits, minute + 1));
+      if (end - minute >= minimumDuration) {
+        ranges.add(minute, end);
+      }
+      minute = nextSetMinute(end);
+    }
+    return ranges;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof DayBitmap && Arrays.equals(words, ((DayBitmap) other).words)
+        && Arrays.equals(splits, ((DayBitmap) other).splits);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(words) + Arrays.hashCode(splits);
+  }
+
+  /**
+   * Returns the first set minute at or after {@code from}, or the end of the day if there is none.
+   */
+  private int nextSetMinute(int from) {
+    return nextSetBit(words, from);
+  }
+
+  /**
+   * Returns the first set bit of {@code bits} at or after {@code from}, or the end of the day if
+   * there is none.
+   */
+  private static int nextSetBit(long[] bits, int from) {
+    if (from >= MINUTES_PER_DAY) {
+      return MINUTES_PER_DAY;
+    }
+
+    int index = from / Long.SIZE;
+    long word = bits[index] & (-1L << from);
+    while (word == 0) {
+      if (++index == WORD_COUNT) {
+        return MINUTES_PER_DAY;
+      }
+      word = bits[index];
+    }
+    return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * Returns the first clear minute at or after {@code from}, or the end of the day if there is
+   * none.
+   */
+  private int nextClearMinute(int from) {
+    if (from >= MINUTES_PER_DAY) {
+      return MINUTES_PER_DAY;
+    }
+
+    int index = from / Long.SIZE;
+    long word = ~words[index] & (-1L << from);
+    while (word == 0) {
+      if (++index == WORD_COUNT) {
+        return MINUTES_PER_DAY;
+      }
+      word = ~words[index];
+    }
+    return Math.min(index * Long.SIZE + Long.numberOfTrailingZeros(word), MINUTES_PER_DAY);
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Comparator;
+
+/**
+ * A span of time that is not limited to one day. Times are counted in minutes since the epoch
+ * (1970-01-01T00:00Z), so a {@code TimeRange} on epoch day {@code d} covers the same minutes as the
+ * {@code EpochRange} shifted by {@code d * MINUTES_PER_DAY}.
+ */
+public final class EpochRange {
+  public static final long MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  /**
+   * A comparator for sorting ranges by their start time in ascending order.
+   */
+  public static final Comparator<EpochRange> ORDER_BY_START = new Comparator<EpochRange>() {
+    @Override
+    public int compare(EpochRange a, EpochRange b) {
+      return Long.compare(a.start, b.start);
+    }
+  };
+
+  private final long start;
+  private final long duration;
+
+  private EpochRange(long start, long duration) {
+    this.start = start;
+    this.duration = duration;
+  }
+
+  /**
+   * Returns the start of the range in minutes since the epoch.
+   */
+  public long start() {
+    return start;
+  }
+
+  /**
+   * Returns the number of minutes between the start and end.
+   */
+  public long duration() {
+    return duration;
+  }
+
+  /**
+   * Returns the end of the range. This ending value is the closing exclusive bound.
+   */
+  public long end() {
+    return start + duration;
+  }
+
+  /**
+   * Checks if two ranges overlap. This means that at least some part of one range falls within the
+   * bounds of another range. Follows the same rules as {@link TimeRange#overlaps}.
+   */
+  public boolean overlaps(EpochRange other) {
+    return this.contains(other.start) || other.contains(this.start);
+  }
+
+  /**
+   * Checks if {@code point} falls within this range. The end of the range is not included.
+   */
+  public boolean contains(long point) {
+    return duration > 0 && point >= start && point < start + duration;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof EpochRange && equals(this, (EpochRange) other);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(start) ^ Long.hashCode(duration);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Range: [%d, %d)", start, start + duration);
+  }
+
+  private static boolean equals(EpochRange a, EpochRange b) {
+    return a.start == b.start && a.duration == b.duration;
+  }
+
+  /**
+   * Creates an {@code EpochRange} from {@code start} to {@code end}. Whether or not {@code end} is
+   * included in the range will depend on {@code inclusive}.
+   */
+  public static EpochRange fromStartEnd(long start, long end, boolean inclusive) {
+    return inclusive ? new EpochRange(start, end - start + 1) : new EpochRange(start, end - start);
+  }
+
+  /**
+   * Creates an {@code EpochRange} starting at {@code start} with a duration equal to
+   * {@code duration}.
+   */
+  public static EpochRange fromStartDuration(long start, long duration) {
+    return new EpochRange(start, duration);
+  }
+
+  /**
+   * Creates an {@code EpochRange} covering {@code range} on epoch day {@code day}.
+   */
+  public static EpochRange fromDay(long day, TimeRange range) {
+    return new EpochRange(day * MINUTES_PER_DAY + range.start(), range.duration());
+  }
+
+  /**
+   * Creates an {@code EpochRange} covering the whole of epoch day {@code day}.
+   */
+  public static EpochRange wholeDay(long day) {
+    return fromDay(day, TimeRange.WHOLE_DAY);
+  }
+}
@@ -14,19 +14,39 @@
 
 package com.google.sps;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
  * Event is the container class for when a specific group of people are meeting and are therefore
  * busy. Events are considered read-only.
+ *
+ * <p>An event takes place on one day, given as the number of days since the epoch. Events that
+ * don't name a day are on day 0, which is the day single-day queries look at.
+ *
+ * <p>Attendees are kept as their sorted ids in the {@link AttendeeDictionary#global() global
+ * dictionary}. In JSON they are still a list of names.
  */
 public final class Event {
   private final String title;
+  private final long day;
   private final TimeRange when;
-  private final Set<String> attendees = new HashSet<>();
+  @JsonAdapter(AttendeeNamesAdapter.class)
+  private final int[] attendees;
+
+  // A read-only view of {@code attendees} as names, made the first time it is asked for.
+  private transient Set<String> attendeeNames;
 
   /**
    * Creates a new event.
@@ -36,6 +56,18 @@ public final class Event {
    * @param attendees The collection of people attending the event. Must be non-null.
    */
   public Event(String title, TimeRange when, Collection<String> attendees) {
+    this(title, 0, when, attendees);
+  }
+
+  /**
+   * Creates a new event on a given day.
+   *
+   * @param title The human-readable name for the event. Must be non-null.
+   * @param day The day the event takes place on, in days since the epoch.
+   * @param when The time of day when the event takes place. Must be non-null.
+   * @param attendees The collection of people attending the event. Must be non-null.
+   */
+  public Event(String title, long day, TimeRange when, Collection<String> attendees) {
     if (title == null) {
       throw new IllegalArgumentException("title cannot be null");
     }
@@ -49,8 +81,9 @@ public final class Event {
     }
 
     this.title = title;
+    this.day = day;
     this.when = when;
-    this.attendees.addAll(attendees);
+    this.attendees = AttendeeDictionary.global().internAll(attendees);
   }
 
   /**
@@ -60,6 +93,13 @@ public final class Event {
     return title;
   }
 
+  /**
+   * Returns the day this event occurs on, in days since the epoch.
+   */
+  public long getDay() {
+    return day;
+  }
+
   /**
    * Returns the {@code TimeRange} for when this event occurs.
    */
@@ -67,13 +107,51 @@ public final class Event {
     return when;
   }
 
+  /**
+   * Returns when this event occurs in minutes since the epoch.
+   */
+  public EpochRange getEpochRange() {
+    return EpochRange.fromDay(day, when);
+  }
+
   /**
    * Returns a read-only set of required attendees for this event.
    */
   public Set<String> getAttendees() {
-    // Return the attendees as an unmodifiable set so that the caller can't change our
-    // internal data.
-    return Collections.unmodifiableSet(attendees);
+    // The view reads the ids directly, so the caller can't change our internal data. It holds
+    // nothing but this event, so it is safe to share even if two threads both make one.
+    Set<String> names = attendeeNames;
+    if (names == null) {
+      names = new AttendeeNames();
+      attendeeNames = names;
+    }
+    return names;
+  }
+
+  /**
+   * Returns whether this event is attended by the attendee with the given id.
+   */
+  boolean hasAttendee(int id) {
+    return Arrays.binarySearch(attendees, id) >= 0;
+  }
+
+  /**
+   * Returns whether this event is attended by any of the attendees with the given ids, which must
+   * be sorted.
+   */
+  boolean hasAnyAttendee(int[] ids) {
+    int i = 0;
+    int j = 0;
+    while (i < attendees.length && j < ids.length) {
+      if (attendees[i] == ids[j]) {
+        return true;
+      } else if (attendees[i] < ids[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return false;
   }
 
   @Override
@@ -89,8 +167,73 @@ public final class Event {
   }
 
   private static boolean equals(Event a, Event b) {
-    // {@code attendees} must be a set for equals to work as expected. According to the {@code Set}
-    // interface documentation, equals will check for set-equality across all set implementations.
-    return a.title.equals(b.title) && a.when.equals(b.when) && a.attendees.equals(b.attendees);
+    // {@code attendees} are sorted and have no duplicates, so equal arrays mean equal sets.
+    return a.title.equals(b.title) && a.day == b.day && a.when.equals(b.when)
+        && Arrays.equals(a.attendees, b.attendees);
+  }
+
+  /**
+   * The attendees of this event as a set of names, backed by their ids.
+   */
+  private final class AttendeeNames extends AbstractSet<String> {
+    @Override
+    public boolean contains(Object name) {
+      if (!(name instanceof String)) {
+        return false;
+      }
+
+      int id = AttendeeDictionary.global().find((String) name);
+      return id != AttendeeDictionary.NO_ID && hasAttendee(id);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+          return next < attendees.length;
+        }
+
+        @Override
+        public String next() {
+          if (next == attendees.length) {
+            throw new NoSuchElementException();
+          }
+          return AttendeeDictionary.global().nameOf(attendees[next++]);
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return attendees.length;
+    }
+  }
+
+  /**
+   * Writes attendee ids as the list of their names, and reads them back into ids.
+   */
+  static final class AttendeeNamesAdapter extends TypeAdapter<int[]> {
+    @Override
+    public void write(JsonWriter out, int[] ids) throws IOException {
+      out.beginArray();
+      for (int id : ids) {
+        out.value(AttendeeDictionary.global().nameOf(id));
+      }
+      out.endArray();
+    }
+
+    @Override
+    public int[] read(JsonReader in) throws IOException {
+      List<String> names = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        names.add(in.nextString());
+      }
+      in.endArray();
+      return AttendeeDictionary.global().internAll(names);
+    }
   }
 }
@@ -0,0 +1,151 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An augmented binary search tree over events, keyed on their start time. Every node also knows the
+ * latest end in its subtree, so a search can skip a whole subtree that ends before the range it is
+ * looking for. Finding the events that overlap a range costs O(log n + k) for k matches.
+ *
+ * <p>For events on day 0 the keys are the same as {@code TimeRange.start()} and
+ * {@code TimeRange.end()}; other days are keyed in minutes since the epoch. The tree is balanced by
+ * building it over an array sorted by start, with the middle element of every slice as its root,
+ * and it cannot be changed once built.
+ */
+public final class EventIntervalTree {
+  static final Comparator<Event> ORDER_BY_START =
+      Comparator.comparing(Event::getEpochRange, EpochRange.ORDER_BY_START);
+
+  private final Event[] events;
+  private final long[] starts;
+  private final long[] maxEnds;
+
+  private EventIntervalTree(Event[] sortedEvents) {
+    this.events = sortedEvents;
+    this.starts = new long[sortedEvents.length];
+    this.maxEnds = new long[sortedEvents.length];
+    for (int i = 0; i < sortedEvents.length; i++) {
+      starts[i] = sortedEvents[i].getEpochRange().start();
+    }
+    computeMaxEnds(0, sortedEvents.length);
+  }
+
+  /**
+   * Creates a tree over the given events.
+   *
+   * @param events The events to put in the tree. Must be non-null.
+   */
+  public static EventIntervalTree fromEvents(Collection<Event> events) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null");
+    }
+
+    Event[] sortedEvents = events.toArray(new Event[0]);
+    Arrays.sort(sortedEvents, ORDER_BY_START);
+    return new EventIntervalTree(sortedEvents);
+  }
+
+  /**
+   * Creates a tree over events that are already sorted with {@link #ORDER_BY_START}. The array is
+   * owned by the tree afterwards and must not be changed.
+   */
+  static EventIntervalTree fromSortedEvents(Event[] sortedEvents) {
+    return new EventIntervalTree(sortedEvents);
+  }
+
+  /**
+   * Returns the events that overlap {@code range}, sorted by start time.
+   */
+  public List<Event> findOverlapping(EpochRange range) {
+    List<Event> overlapping = new ArrayList<>();
+    findOverlapping(0, events.length, range, overlapping);
+    return overlapping;
+  }
+
+  /**
+   * Returns the events taking place during {@code minute}, sorted by start time.
+   */
+  public List<Event> findAt(long minute) {
+    return findOverlapping(EpochRange.fromStartDuration(minute, 1));
+  }
+
+  /**
+   * Returns every event in the tree, sorted by start time.
+   */
+  public List<Event> getEvents() {
+    return Collections.unmodifiableList(Arrays.asList(events));
+  }
+
+  /**
+   * Returns the number of events in the tree.
+   */
+  public int size() {
+    return events.length;
+  }
+
+  /**
+   * Returns the events array, sorted by start time, for building an updated tree from. It must not
+   * be changed.
+   */
+  Event[] sortedEvents() {
+    return events;
+  }
+
+  /**
+   * Fills in the latest end of the subtree rooted at the middle of {@code [low, high)} and returns
+   * it.
+   */
+  private long computeMaxEnds(int low, int high) {
+    if (low >= high) {
+      return Long.MIN_VALUE;
+    }
+
+    int middle = (low + high) >>> 1;
+    long maxEnd = events[middle].getEpochRange().end();
+    maxEnd = Math.max(maxEnd, computeMaxEnds(low, middle));
+    maxEnd = Math.max(maxEnd, computeMaxEnds(middle + 1, high));
+    maxEnds[middle] = maxEnd;
+    return maxEnd;
+  }
+
+  private void findOverlapping(int low, int high, EpochRange range, List<Event> overlapping) {
+    if (low >= high) {
+      return;
+    }
+
+    int middle = (low + high) >>> 1;
+    // Nothing in this subtree ends late enough to reach the range. An event with no duration that
+    // sits right on the start of the range still counts, hence the strict comparison.
+    if (maxEnds[middle] < range.start()) {
+      return;
+    }
+
+    findOverlapping(low, middle, range, overlapping);
+    if (events[middle].getEpochRange().overlaps(range)) {
+      overlapping.add(events[middle]);
+    }
+    // Everything to the right starts at least as late as this event.
+    if (starts[middle] <= range.end()) {
+      findOverlapping(middle + 1, high, range, overlapping);
+    }
+  }
+}
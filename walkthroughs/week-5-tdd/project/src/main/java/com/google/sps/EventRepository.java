@@ -0,0 +1,55 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where the events of the calendar are kept. The scheduler's in-memory structures, like
+ * {@code AttendeeIndex} and {@code EventTimeline}, are built from a repository when the app starts.
+ */
+public interface EventRepository extends Closeable {
+  /**
+   * Returns every event, sorted by start time.
+   */
+  List<Event> getEvents() throws IOException;
+
+  /**
+   * Returns the events that overlap {@code range}, sorted by start time.
+   */
+  List<Event> findOverlapping(EpochRange range) throws IOException;
+
+  /**
+   * Returns the events {@code attendee} attends, in the order they were added.
+   */
+  List<Event> findByAttendee(String attendee) throws IOException;
+
+  /**
+   * Returns the number of events.
+   */
+  int size();
+
+  /**
+   * Adds {@code event}. Once this returns, the event is kept even if the app stops.
+   */
+  void add(Event event) throws IOException;
+
+  /**
+   * Removes one occurrence of {@code event}, returning whether there was one.
+   */
+  boolean remove(Event event) throws IOException;
+}
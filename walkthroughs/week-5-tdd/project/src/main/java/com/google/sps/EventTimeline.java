@@ -0,0 +1,121 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Every event of the calendar, kept in an {@code EventIntervalTree}. Finding the events in a window
+ * costs O(log n + k) for k matches, so it grows with the events in the window and not with the size
+ * of the calendar.
+ *
+ * <p>Reads never block. Writes build a new tree and swap it in, which suits a calendar that is read
+ * far more often than it changes.
+ */
+public final class EventTimeline {
+  private volatile EventIntervalTree tree;
+
+  // Bumped after every write, once the new tree is in place. Someone who reads the version and
+  // then the events sees events at least as new as that version.
+  private volatile long version;
+
+  private EventTimeline(EventIntervalTree tree) {
+    this.tree = tree;
+  }
+
+  /**
+   * Creates a timeline of the given events.
+   *
+   * @param events The events to put on the timeline. Must be non-null.
+   */
+  public static EventTimeline fromEvents(Collection<Event> events) {
+    return new EventTimeline(EventIntervalTree.fromEvents(events));
+  }
+
+  /**
+   * Returns the events that overlap {@code range}, sorted by start time.
+   */
+  public List<Event> findOverlapping(EpochRange range) {
+    return tree.findOverlapping(range);
+  }
+
+  /**
+   * Returns every event on the timeline, sorted by start time.
+   */
+  public List<Event> getEvents() {
+    return tree.getEvents();
+  }
+
+  /**
+   * Returns the number of events on the timeline.
+   */
+  public int size() {
+    return tree.size();
+  }
+
+  /**
+   * Returns a number that changes every time an event is added to or removed from the timeline.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Adds {@code event} to the timeline.
+   */
+  public synchronized void add(Event event) {
+    Event[] events = tree.sortedEvents();
+    int position = Arrays.binarySearch(events, event, EventIntervalTree.ORDER_BY_START);
+    if (position < 0) {
+      position = -position - 1;
+    }
+
+    Event[] updated = new Event[events.length + 1];
+    System.arraycopy(events, 0, updated, 0, position);
+    updated[position] = event;
+    System.arraycopy(events, position, updated, position + 1, events.length - position);
+    tree = EventIntervalTree.fromSortedEvents(updated);
+    version++;
+  }
+
+  /**
+   * Removes one occurrence of {@code event} from the timeline, if it is on it.
+   */
+  public synchronized void remove(Event event) {
+    Event[] events = tree.sortedEvents();
+    int position = Arrays.binarySearch(events, event, EventIntervalTree.ORDER_BY_START);
+    if (position < 0) {
+      return;
+    }
+
+    // The search lands on any event with the same start, so look at all of them.
+    long start = event.getEpochRange().start();
+    while (position > 0 && events[position - 1].getEpochRange().start() == start) {
+      position--;
+    }
+    for (int i = position; i < events.length && events[i].getEpochRange().start() == start; i++) {
+      if (events[i].equals(event)) {
+        Event[] updated = new Event[events.length - 1];
+        System.arraycopy(events, 0, updated, 0, i);
+        System.arraycopy(events, i + 1, updated, i, events.length - i - 1);
+        tree = EventIntervalTree.fromSortedEvents(updated);
+        version++;
+        return;
+      }
+    }
+  }
+}
@@ -15,13 +15,20 @@
 package com.google.sps;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.ListIterator;
 import java.util.HashSet;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
 * The FindingMeetingQuery is a container class that is able to find available meeting times for a particualr requested meeting
@@ -30,8 +37,67 @@ import java.util.Set;
 public final class FindMeetingQuery {
 
   /**
-  * Finds potential meeting times by first starting with the whole day as a postential time, and then removing blocks of 
-  * times where another event with a common guest is ongoing
+  * The ways the free times of a group of guests can be computed. Every mode finds the same times, including around
+  * events with no duration, which split a free time in two without making anyone busy
+  */
+  public enum Mode {
+    /** Sorts the busy times of the guests and sweeps over them once */
+    INTERVALS,
+    /** Combines a minute-resolution bitmap of each guest's busy times with word-wide operations */
+    BITMAP,
+    /**
+     * Like INTERVALS, but for meetings with many guests the busy times of slices of the guests are merged on a
+     * ForkJoinPool and the merged slices are combined pairwise
+     */
+    PARALLEL,
+    /** Intersects the free times each guest's FreeTimeTracker keeps up to date, without looking at busy times */
+    FREE_TIMES
+  }
+
+  /** The number of guests at or below which the PARALLEL mode merges busy times on the calling thread */
+  public static final int DEFAULT_PARALLEL_THRESHOLD = 64;
+
+  private final Mode mode;
+  private final ForkJoinPool pool;
+  private final int parallelThreshold;
+
+  public FindMeetingQuery() {
+    this(Mode.INTERVALS);
+  }
+
+  public FindMeetingQuery(Mode mode) {
+    this(mode, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+  }
+
+  /**
+  * Creates a query in the given mode, which uses the given pool and threshold if the mode is PARALLEL
+  * 
+  * @param  mode  the way free times are computed
+  * @param  pool the ForkJoinPool that busy times are merged on
+  * @param  parallelThreshold the number of guests at or below which the busy times are merged on the calling
+  *                           thread. It is also the most guests merged by one task
+  */  
+
+  public FindMeetingQuery(Mode mode, ForkJoinPool pool, int parallelThreshold) {
+    if (mode == null) {
+      throw new IllegalArgumentException("mode cannot be null");
+    }
+
+    if (pool == null) {
+      throw new IllegalArgumentException("pool cannot be null");
+    }
+
+    if (parallelThreshold <= 0) {
+      throw new IllegalArgumentException("parallelThreshold must be positive");
+    }
+    this.mode = mode;
+    this.pool = pool;
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  /**
+  * Finds potential meeting times for the requested meeting around the given events. Only the events of the requested
+  * guests are indexed, so events of other people are skipped after a look at their attendee ids
   * 
   * @param  events  a Collection<Event> each with an event title, list of guests and Timerange of event
   * @param  request a MeetingRequest with lists of mandatory and otpional guests, as well as duration for the meeting
@@ -39,133 +105,448 @@ public final class FindMeetingQuery {
   */  
 
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
-    ArrayList<TimeRange> potentialMeetingTimes = new ArrayList<>();
-    potentialMeetingTimes.add(TimeRange.WHOLE_DAY);
+    return query(AttendeeIndex.fromEvents(events, requestedGuests(request)), request);
+  }
+
+  /**
+  * Finds potential meeting times for many requested meetings around the same events. The events are indexed once for
+  * the whole batch, for the guests of any of the requests, and the requests are answered in parallel on the common ForkJoinPool
+  * 
+  * @param  events  a Collection<Event> each with an event title, list of guests and Timerange of event
+  * @param  requests a List<MeetingRequest> of the meetings to find times for
+  * @return      List<Collection<TimeRange>> of the possible times for each request, in the order of the requests
+  */  
+
+  public List<Collection<TimeRange>> queryAll(Collection<Event> events, List<MeetingRequest> requests) {
+    Set<String> meetingGuests = new HashSet<>();
+    for (MeetingRequest request : requests) {
+      meetingGuests.addAll(requestedGuests(request));
+    }
+    return queryAll(AttendeeIndex.fromEvents(events, meetingGuests), requests);
+  }
+
+  /**
+  * Finds potential meeting times for many requested meetings in parallel on the common ForkJoinPool. The attendee
+  * index is only read, so all requests share it
+  * 
+  * @param  attendeeIndex  an AttendeeIndex with the busy times of every guest in the calendar
+  * @param  requests a List<MeetingRequest> of the meetings to find times for
+  * @return      List<Collection<TimeRange>> of the possible times for each request, in the order of the requests
+  */  
+
+  public List<Collection<TimeRange>> queryAll(AttendeeIndex attendeeIndex, List<MeetingRequest> requests) {
+    return requests.parallelStream()
+        .map(request -> query(attendeeIndex, request))
+        .collect(Collectors.toList());
+  }
+
+  /**
+  * Finds potential meeting times by collecting the times where a requested guest is busy, sorting them by start time
+  * and sweeping over them once, emitting every gap between busy blocks that is long enough for the meeting. Only the
+  * busy times of the requested guests are looked at, so events of other people cost nothing
+  * 
+  * @param  attendeeIndex  an AttendeeIndex with the busy times of every guest in the calendar
+  * @param  request a MeetingRequest with lists of mandatory and otpional guests, as well as duration for the meeting
+  * @return      Collection<TimeRange> of possible times the requested meeting could occur
+  */  
+
+  public Collection<TimeRange> query(AttendeeIndex attendeeIndex, MeetingRequest request) {
+    if (request.getLimit() > 0) {
+      return stream(attendeeIndex, request).collect(Collectors.toList());
+    }
 
     Collection<String> mandatoryMeetingGuests = request.getAttendees();
     Collection<String> optionalMeetingGuests = request.getOptionalAttendees();
     long meetingDuration = request.getDuration();
-    Collection<TimeRange> finalPossibleTimes = new ArrayList<>();
-
-    ArrayList<TimeRange> unavailableTimesForOptionalGuests = new ArrayList<>();
-    
-    // Check if there are any meeting guests in the event guest list, and if there are, remove the block of time 
-    // for the event from the potential meeting times 
-    for (Event event : events) {
-      TimeRange eventTime = event.getWhen();
-      Set<String> eventGuests = event.getAttendees();
-      for (String mandatoryMeetingGuest: mandatoryMeetingGuests) {
-        if (eventGuests.contains(mandatoryMeetingGuest)) {
-          removeConflictTimeFromPotentialTimes(potentialMeetingTimes, eventTime);
-        }
-      }
-      for (String optionalMeetingGuest: optionalMeetingGuests) {
-        if (eventGuests.contains(optionalMeetingGuest)) {
-          unavailableTimesForOptionalGuests.add(eventTime);
-        }
-      }
+
+    // The times are worked out as packed ranges, and only turned into TimeRanges on the way out
+    TimeRangeList mandatoryGuestTimes = findAvailableTimes(attendeeIndex, mandatoryMeetingGuests, meetingDuration);
+    if (optionalMeetingGuests.isEmpty()) {
+      return mandatoryGuestTimes.toTimeRanges();
+    }
+
+    Collection<String> allMeetingGuests = new ArrayList<>(mandatoryMeetingGuests);
+    allMeetingGuests.addAll(optionalMeetingGuests);
+    TimeRangeList allGuestTimes = findAvailableTimes(attendeeIndex, allMeetingGuests, meetingDuration);
+
+    // If there are no mandatory meeting guests, then we want to schedule only around optional guests
+    if (!allGuestTimes.isEmpty() || mandatoryMeetingGuests.isEmpty()) {
+      return allGuestTimes.toTimeRanges();
+    }
+
+    // It was impossible to find a time to work for all mandatory guests and all optional guests, so get the
+    // optimized times where the highest number of optional guests can attend
+    return findTimesWithMostOptionalGuests(
+        attendeeIndex, optionalMeetingGuests, mandatoryGuestTimes, meetingDuration).toTimeRanges();
+  }
+
+  /**
+  * Finds potential meeting times lazily, earliest first. Nothing is looked up until the stream is consumed, and no
+  * TimeRange is made for times that are never asked for, so taking the first element or writing the times straight
+  * to a JsonWriter doesn't build the whole list. The request's limit, if it has one, is applied
+  * 
+  * @param  events  a Collection<Event> each with an event title, list of guests and Timerange of event
+  * @param  request a MeetingRequest with lists of mandatory and otpional guests, as well as duration for the meeting
+  * @return      Stream<TimeRange> of possible times the requested meeting could occur, ordered by start time
+  */  
+
+  public Stream<TimeRange> stream(Collection<Event> events, MeetingRequest request) {
+    return stream(() -> AttendeeIndex.fromEvents(events, requestedGuests(request)), request);
+  }
+
+  /**
+  * Finds potential meeting times lazily, earliest first, like {@link #stream(Collection, MeetingRequest)}, against
+  * an index that was built once
+  * 
+  * @param  attendeeIndex  an AttendeeIndex with the busy times of every guest in the calendar
+  * @param  request a MeetingRequest with lists of mandatory and otpional guests, as well as duration for the meeting
+  * @return      Stream<TimeRange> of possible times the requested meeting could occur, ordered by start time
+  */  
+
+  public Stream<TimeRange> stream(AttendeeIndex attendeeIndex, MeetingRequest request) {
+    return stream(() -> attendeeIndex, request);
+  }
+
+  private Stream<TimeRange> stream(Supplier<AttendeeIndex> attendeeIndex, MeetingRequest request) {
+    int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+    Stream<TimeRange> times = StreamSupport.stream(
+        () -> Spliterators.spliteratorUnknownSize(iterate(attendeeIndex.get(), request), characteristics),
+        characteristics, false);
+    return request.getLimit() > 0 ? times.limit(request.getLimit()) : times;
+  }
+
+  /**
+  * Finds potential meeting times one at a time, earliest first, in the same way as {@link #query(AttendeeIndex,
+  * MeetingRequest)}. The busy times of the guests are only sorted an hour at a time as the times are asked for, so
+  * finding the first few skips sorting the rest of the day. This is done whatever the mode of this query. If no time works for
+  * every optional guest, the times where the most optional guests can attend are all found before the first is
+  * returned
+  * 
+  * @param  attendeeIndex  an AttendeeIndex with the busy times of every guest in the calendar
+  * @param  request a MeetingRequest with lists of mandatory and otpional guests, as well as duration for the meeting
+  * @return      Iterator<TimeRange> over the possible times the requested meeting could occur
+  */  
+
+  private Iterator<TimeRange> iterate(AttendeeIndex attendeeIndex, MeetingRequest request) {
+    Collection<String> mandatoryMeetingGuests = request.getAttendees();
+    Collection<String> optionalMeetingGuests = request.getOptionalAttendees();
+    long meetingDuration = request.getDuration();
+
+    if (optionalMeetingGuests.isEmpty()) {
+      return new SlotIterator(attendeeIndex, mandatoryMeetingGuests, meetingDuration);
+    }
+
+    Collection<String> allMeetingGuests = new ArrayList<>(mandatoryMeetingGuests);
+    allMeetingGuests.addAll(optionalMeetingGuests);
+    SlotIterator allGuestTimes = new SlotIterator(attendeeIndex, allMeetingGuests, meetingDuration);
+    if (allGuestTimes.hasNext() || mandatoryMeetingGuests.isEmpty()) {
+      return allGuestTimes;
     }
-    
-    ArrayList<TimeRange> bestPotentialTimesSoFar = new ArrayList<TimeRange>(potentialMeetingTimes);
-    // Make a hashmap of all eliminated times and frequency of elimination, to optimize scheduling with the most optional guests 
-    HashMap<TimeRange, Integer> eliminatedTimes = new HashMap<>();
- 
-    for (TimeRange unavailableTime: unavailableTimesForOptionalGuests) {
-      boolean unavailableTimeAlreadyDeleted = false;
-      ListIterator<TimeRange> potentialTimesIterator = potentialMeetingTimes.listIterator();
-      while (potentialTimesIterator.hasNext()) {
-        TimeRange potentialTime = potentialTimesIterator.next();
-        if (unavailableTime.overlaps(potentialTime)) {
-          potentialTimesIterator.remove();
-          unavailableTimeAlreadyDeleted = true;
-          // Put unavailable time in eliminated times hashmap and assign frequency of 1 first time it is deleted
-          eliminatedTimes.put(potentialTime, 1);
-          if (potentialTime.start() < unavailableTime.start()) {
-          // If there is time available before the start of the conflict time, add to the list of potential times 
-            TimeRange timeBeforeConflict = TimeRange.fromStartEnd(potentialTime.start(), unavailableTime.start(), false);
-            potentialTimesIterator.add(timeBeforeConflict);
-          }
-          // If there is time available after the end of the conflict time, add to the list of potential times 
-          if (unavailableTime.end() < potentialTime.end()) {
-            TimeRange timeAfterConflict = TimeRange.fromStartEnd(unavailableTime.end(), potentialTime.end(), false);
-            potentialTimesIterator.add(timeAfterConflict);
-          }
-        } 
+
+    TimeRangeList mandatoryGuestTimes = findAvailableTimes(attendeeIndex, mandatoryMeetingGuests, meetingDuration);
+    return findTimesWithMostOptionalGuests(
+        attendeeIndex, optionalMeetingGuests, mandatoryGuestTimes, meetingDuration).toTimeRanges().iterator();
+  }
+
+  /**
+  * Finds potential meeting times across the horizon of the request, which may span many days. Only the events that
+  * overlap the horizon are looked at. If no time works for every optional guest, the times that work for the
+  * mandatory guests are returned; the search for the times where the most optional guests can attend is only done
+  * for single-day queries
+  * 
+  * @param  timeline  an EventTimeline with every event of the calendar
+  * @param  request a MeetingRequest with lists of guests, the duration for the meeting and a horizon. Requests
+  *                 without a horizon are looked for on day 0
+  * @return      Collection<EpochRange> of possible times the requested meeting could occur, in minutes since the epoch
+  */  
+
+  public Collection<EpochRange> queryHorizon(EventTimeline timeline, MeetingRequest request) {
+    EpochRange horizon = request.getHorizon();
+    if (horizon == null) {
+      horizon = EpochRange.wholeDay(0);
+    }
+    Collection<String> mandatoryMeetingGuests = request.getAttendees();
+    Collection<String> optionalMeetingGuests = request.getOptionalAttendees();
+    long meetingDuration = request.getDuration();
+
+    // The guests are checked against each event by their attendee ids, which are sorted, so no names are hashed
+    int[] mandatoryGuestIds = request.getAttendeeIds();
+    int[] optionalGuestIds = request.getOptionalAttendeeIds();
+    List<EpochRange> unavailableTimesForMandatoryGuests = new ArrayList<>();
+    List<EpochRange> unavailableTimesForAllGuests = new ArrayList<>();
+    for (Event event : timeline.findOverlapping(horizon)) {
+      if (event.hasAnyAttendee(mandatoryGuestIds)) {
+        unavailableTimesForMandatoryGuests.add(event.getEpochRange());
+        unavailableTimesForAllGuests.add(event.getEpochRange());
+      } else if (event.hasAnyAttendee(optionalGuestIds)) {
+        unavailableTimesForAllGuests.add(event.getEpochRange());
       }
-      // If the uunavailable time is not deleted, check if it has previously been deleted and increase frequency by 1
-      if (!unavailableTimeAlreadyDeleted) {
-          for (TimeRange deletedTime: eliminatedTimes.keySet()) {
-              if (unavailableTime.overlaps(deletedTime)) {
-                  int count = eliminatedTimes.get(deletedTime);
-                  eliminatedTimes.replace(deletedTime, count + 1);
-              }
-          }
+    }
+
+    List<EpochRange> allGuestTimes = sweepAvailableTimes(horizon, unavailableTimesForAllGuests, meetingDuration);
+    if (!allGuestTimes.isEmpty() || mandatoryMeetingGuests.isEmpty() || optionalMeetingGuests.isEmpty()) {
+      return limit(allGuestTimes, request.getLimit());
+    }
+    return limit(sweepAvailableTimes(horizon, unavailableTimesForMandatoryGuests, meetingDuration), request.getLimit());
+  }
+
+  private static Collection<String> requestedGuests(MeetingRequest request) {
+    Collection<String> meetingGuests = new ArrayList<>(request.getAttendees());
+    meetingGuests.addAll(request.getOptionalAttendees());
+    return meetingGuests;
+  }
+
+  private static <T> List<T> limit(List<T> times, int limit) {
+    return limit > 0 && times.size() > limit ? new ArrayList<>(times.subList(0, limit)) : times;
+  }
+
+  /**
+  * Finds the times where all of the given guests are free, using the mode of this query
+  * 
+  * @param  attendeeIndex  an AttendeeIndex with the busy times of every guest in the calendar
+  * @param  meetingGuests the guests that all need to be free
+  * @param  meetingDuration the minimum number of minutes a free time needs to be returned
+  * @return      TimeRangeList of the free times of the day, ordered by start time
+  */  
+
+  private TimeRangeList findAvailableTimes(
+      AttendeeIndex attendeeIndex, Collection<String> meetingGuests, long meetingDuration) {
+    if (mode == Mode.BITMAP) {
+      DayBitmap unavailableMinutes = new DayBitmap();
+      for (String meetingGuest : meetingGuests) {
+        unavailableMinutes.or(attendeeIndex.getBusyBitmap(meetingGuest));
       }
+      unavailableMinutes.flip();
+      return unavailableMinutes.toRangeList(meetingDuration);
     }
-    
-    // If there are no mandatory meeting guests, then we want to schedule only around optional guests
-    if (mandatoryMeetingGuests.isEmpty()) {
-      bestPotentialTimesSoFar = potentialMeetingTimes;
+
+    if (mode == Mode.FREE_TIMES) {
+      return intersectFreeTimes(attendeeIndex, meetingGuests, meetingDuration);
+    }
+
+    if (mode == Mode.PARALLEL && meetingGuests.size() > parallelThreshold) {
+      String[] guests = meetingGuests.toArray(new String[0]);
+      TimeRangeList unavailableTimes =
+          pool.invoke(new MergeBusyTimesTask(attendeeIndex, guests, 0, guests.length, parallelThreshold));
+      return availableTimesBetween(unavailableTimes, meetingDuration);
     }
 
-    // If there is potential meeting time has a shorter duration than the meeting request, then delete that potential time because it doesn't work
-    ListIterator<TimeRange> potentialTimesIterator = potentialMeetingTimes.listIterator();
-    while (potentialTimesIterator.hasNext()) {
-      TimeRange potentialTime = potentialTimesIterator.next(); 
-      if (meetingDuration > potentialTime.duration()) {
-        potentialTimesIterator.remove();
+    TimeRangeList unavailableTimes = new TimeRangeList();
+    for (String meetingGuest : meetingGuests) {
+      unavailableTimes.addAll(attendeeIndex.getBusyTimeList(meetingGuest));
+    }
+    return sweepAvailableTimes(unavailableTimes, meetingDuration);
+  }
+
+  /**
+  * Intersects the free times of the guests one guest at a time, stopping early once no free time is left. The free
+  * times only shrink, so the ones too short for the meeting are dropped at the end
+  * 
+  * @param  attendeeIndex  an AttendeeIndex with the free times of every guest in the calendar
+  * @param  meetingGuests the guests that all need to be free
+  * @param  meetingDuration the minimum number of minutes a free time needs to be returned
+  * @return      TimeRangeList of the free times of the day, ordered by start time
+  */  
+
+  private static TimeRangeList intersectFreeTimes(
+      AttendeeIndex attendeeIndex, Collection<String> meetingGuests, long meetingDuration) {
+    TimeRangeList freeTimes = TimeRangeList.fromTimeRanges(Collections.singletonList(TimeRange.WHOLE_DAY));
+    for (String meetingGuest : meetingGuests) {
+      freeTimes = TimeRangeList.intersection(freeTimes, attendeeIndex.getFreeTimeList(meetingGuest));
+      if (freeTimes.isEmpty()) {
+        break;
       }
-    } 
-
-    // If it was impossible to find a time to work for all mandatory guests and all optional guests, then get the optimized times where the highest
-    // number of optional guests can attend
-    if (potentialMeetingTimes.isEmpty() && !unavailableTimesForOptionalGuests.isEmpty()) {
-      potentialMeetingTimes = bestPotentialTimesSoFar;
-      // Array to keep timeranges where the most optional guests can attend
-      ArrayList<TimeRange> timesWithLeastClashes = new ArrayList<>();
-      if (!eliminatedTimes.isEmpty() && !mandatoryMeetingGuests.isEmpty()) {
-          // Gets all frequencies of the deleted times
-          Collection<Integer> counts = eliminatedTimes.values();
-          // Pick the minimum frequency, because that means this is the time where the least number of optional guests have clashes 
-          int min = Collections.min(counts); 
-          for (TimeRange potentialTime: eliminatedTimes.keySet()) {
-              if (eliminatedTimes.get(potentialTime) == min) {
-                  timesWithLeastClashes.add(potentialTime);
-              }
-          }
+    }
+
+    TimeRangeList availableTimes = new TimeRangeList(freeTimes.size());
+    for (int i = 0; i < freeTimes.size(); i++) {
+      addIfLongEnough(availableTimes, freeTimes.start(i), freeTimes.end(i), meetingDuration);
+    }
+    return availableTimes;
+  }
+
+  /**
+  * Sorts the unavailable times by start time and sweeps over them once. Overlapping and touching blocks are merged
+  * on the way by tracking the latest end seen so far, and every gap before the next block is a free time
+  * 
+  * @param  unavailableTimes  the times where at least one guest is busy, in any order. They are sorted in place
+  * @param  meetingDuration the minimum number of minutes a free time needs to be returned
+  * @return      TimeRangeList of the free times of the day, ordered by start time
+  */  
+
+  private static TimeRangeList sweepAvailableTimes(TimeRangeList unavailableTimes, long meetingDuration) {
+    unavailableTimes.sort();
+    return availableTimesBetween(unavailableTimes, meetingDuration);
+  }
+
+  /**
+  * Finds the gaps between unavailable times that are already sorted by start time, which may overlap
+  */  
+
+  private static TimeRangeList availableTimesBetween(TimeRangeList unavailableTimes, long meetingDuration) {
+    TimeRangeList availableTimes = new TimeRangeList();
+    int freeTimeStart = TimeRange.START_OF_DAY;
+    for (int i = 0; i < unavailableTimes.size(); i++) {
+      addIfLongEnough(availableTimes, freeTimeStart, unavailableTimes.start(i), meetingDuration);
+      freeTimeStart = Math.max(freeTimeStart, unavailableTimes.end(i));
+    }
+    addIfLongEnough(availableTimes, freeTimeStart, TimeRange.WHOLE_DAY.end(), meetingDuration);
+    return availableTimes;
+  }
+
+  /**
+  * Sweeps over the unavailable times like {@link #sweepAvailableTimes(TimeRangeList, long)}, but across a horizon that may span
+  * many days
+  */  
+
+  private static List<EpochRange> sweepAvailableTimes(
+      EpochRange horizon, List<EpochRange> unavailableTimes, long meetingDuration) {
+    List<EpochRange> sortedUnavailableTimes = new ArrayList<>(unavailableTimes);
+    Collections.sort(sortedUnavailableTimes, EpochRange.ORDER_BY_START);
+
+    List<EpochRange> availableTimes = new ArrayList<>();
+    long freeTimeStart = horizon.start();
+    for (EpochRange unavailableTime : sortedUnavailableTimes) {
+      long freeTimeEnd = Math.min(unavailableTime.start(), horizon.end());
+      if (freeTimeEnd > freeTimeStart && freeTimeEnd - freeTimeStart >= meetingDuration) {
+        availableTimes.add(EpochRange.fromStartEnd(freeTimeStart, freeTimeEnd, false));
       }
-      // If there is an optimized solution, then use those times 
-      if (!timesWithLeastClashes.isEmpty()) potentialMeetingTimes = timesWithLeastClashes;
+      freeTimeStart = Math.max(freeTimeStart, unavailableTime.end());
     }
+    if (horizon.end() > freeTimeStart && horizon.end() - freeTimeStart >= meetingDuration) {
+      availableTimes.add(EpochRange.fromStartEnd(freeTimeStart, horizon.end(), false));
+    }
+    return availableTimes;
+  }
+
+  /**
+  * Merges the busy times of a slice of the guests. Slices with more guests than the threshold are split in half,
+  * the halves are merged in parallel, and the two merged lists are combined in one pass
+  */
+
+  private static final class MergeBusyTimesTask extends RecursiveTask<TimeRangeList> {
+    private final AttendeeIndex attendeeIndex;
+    private final String[] guests;
+    private final int from;
+    private final int to;
+    private final int threshold;
 
-    finalPossibleTimes = potentialMeetingTimes;    
-    return finalPossibleTimes;
+    MergeBusyTimesTask(AttendeeIndex attendeeIndex, String[] guests, int from, int to, int threshold) {
+      this.attendeeIndex = attendeeIndex;
+      this.guests = guests;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected TimeRangeList compute() {
+      if (to - from <= threshold) {
+        TimeRangeList busyTimes = new TimeRangeList();
+        for (int i = from; i < to; i++) {
+          busyTimes.addAll(attendeeIndex.getBusyTimeList(guests[i]));
+        }
+        busyTimes.sort();
+        return busyTimes.merged();
+      }
+
+      int middle = (from + to) >>> 1;
+      MergeBusyTimesTask firstHalf = new MergeBusyTimesTask(attendeeIndex, guests, from, middle, threshold);
+      firstHalf.fork();
+      TimeRangeList secondHalf = new MergeBusyTimesTask(attendeeIndex, guests, middle, to, threshold).compute();
+      return TimeRangeList.union(firstHalf.join(), secondHalf);
+    }
   }
 
+  private static void addIfLongEnough(TimeRangeList availableTimes, int start, int end, long meetingDuration) {
+    if (end > start && end - start >= meetingDuration) {
+      availableTimes.add(start, end);
+    }
+  }
 
   /**
-  * Resolves conflicts by removing unavailable times from potential times, and adding times before and after conflict
+  * Counts, for every minute of the day, how many optional guests are free for a whole meeting starting at that
+  * minute, using a difference array over the busy times of each optional guest. A busy time from a to b blocks every
+  * meeting starting after a - duration and before b, so each busy time is widened by the meeting duration first.
+  * Then finds the highest count that still leaves a meeting start inside the free times of the mandatory guests, and
+  * returns the times covered by the meetings with that count. Fewer starts qualify as the count goes up, so the
+  * highest count is found with a binary search
   * 
-  * @param  potentialMeetingTimes  a Collection of all known potential meeting times 
-  * @param  conflictingTime a TimeRange where another event is going on 
+  * @param  attendeeIndex  an AttendeeIndex with the busy times of every guest in the calendar
+  * @param  optionalMeetingGuests the optional guests, who are not all free at any long enough time
+  * @param  mandatoryGuestTimes the free times of the mandatory guests that are long enough for the meeting
+  * @param  meetingDuration the number of minutes the meeting takes
+  * @return      TimeRangeList of the times where the most optional guests can attend
   */  
 
-  public void removeConflictTimeFromPotentialTimes(ArrayList<TimeRange> potentialMeetingTimes, TimeRange conflictingTime) {
-    ListIterator<TimeRange> potentialTimesIterator = potentialMeetingTimes.listIterator();
-    while (potentialTimesIterator.hasNext()) {
-      TimeRange potentialTime = potentialTimesIterator.next();
-      if (conflictingTime.overlaps(potentialTime)) {
-        //  Remove any time that overlaps with the clash time 
-        potentialTimesIterator.remove();
-        if (potentialTime.start() < conflictingTime.start()) {
-          TimeRange timeBeforeConflict = TimeRange.fromStartEnd(potentialTime.start(), conflictingTime.start(), false);
-          potentialTimesIterator.add(timeBeforeConflict);
+  private static TimeRangeList findTimesWithMostOptionalGuests(AttendeeIndex attendeeIndex,
+      Collection<String> optionalMeetingGuests, TimeRangeList mandatoryGuestTimes, long meetingDuration) {
+    if (mandatoryGuestTimes.isEmpty()) {
+      return mandatoryGuestTimes;
+    }
+    // The mandatory guest times are long enough for the meeting, so the duration fits in a day here
+    int widening = (int) Math.max(meetingDuration, 1) - 1;
+
+    int[] freeGuests = new int[TimeRange.WHOLE_DAY.end() + 1];
+    freeGuests[0] = optionalMeetingGuests.size();
+    for (String optionalMeetingGuest : optionalMeetingGuests) {
+      // The busy times are sorted by start, so busy times of one guest that overlap once widened are merged on the
+      // way and the guest is only counted as busy once
+      int blockedStart = 0;
+      int blockedEnd = 0;
+      TimeRangeList busyTimes = attendeeIndex.getBusyTimeList(optionalMeetingGuest);
+      for (int i = 0; i < busyTimes.size(); i++) {
+        int start = Math.max(busyTimes.start(i) - widening, 0);
+        if (start > blockedEnd) {
+          freeGuests[blockedStart]--;
+          freeGuests[blockedEnd]++;
+          blockedStart = start;
         }
-        if (conflictingTime.end() < potentialTime.end()) {
-          TimeRange timeAfterConflict = TimeRange.fromStartEnd(conflictingTime.end(), potentialTime.end(), false);
-          potentialTimesIterator.add(timeAfterConflict);
+        blockedEnd = Math.max(blockedEnd, busyTimes.end(i));
+      }
+      freeGuests[blockedStart]--;
+      freeGuests[blockedEnd]++;
+    }
+    for (int minute = 1; minute < freeGuests.length; minute++) {
+      freeGuests[minute] += freeGuests[minute - 1];
+    }
+
+    // Everyone being free was already ruled out, so search the counts below that
+    TimeRangeList timesWithMostGuests = mandatoryGuestTimes;
+    int fewest = 1;
+    int most = optionalMeetingGuests.size() - 1;
+    while (fewest <= most) {
+      int guests = (fewest + most) >>> 1;
+      TimeRangeList times = findTimesWithFreeGuests(freeGuests, guests, mandatoryGuestTimes, widening + 1);
+      if (times.isEmpty()) {
+        most = guests - 1;
+      } else {
+        timesWithMostGuests = times;
+        fewest = guests + 1;
+      }
+    }
+    return timesWithMostGuests;
+  }
+
+  /**
+  * Finds the times inside the mandatory guest times that are covered by meetings starting at a minute where at least
+  * {@code guests} optional guests are free for the whole meeting
+  */
+
+  private static TimeRangeList findTimesWithFreeGuests(
+      int[] freeGuests, int guests, TimeRangeList mandatoryGuestTimes, int meetingDuration) {
+    TimeRangeList times = new TimeRangeList();
+    for (int i = 0; i < mandatoryGuestTimes.size(); i++) {
+      int lastStart = mandatoryGuestTimes.end(i) - meetingDuration;
+      int runStart = mandatoryGuestTimes.start(i);
+      for (int start = runStart; start <= lastStart; start++) {
+        if (freeGuests[start] < guests) {
+          addIfLongEnough(times, runStart, start - 1 + meetingDuration, meetingDuration);
+          runStart = start + 1;
         }
       }
+      addIfLongEnough(times, runStart, lastStart + meetingDuration, meetingDuration);
     }
+    return times;
   }
 }
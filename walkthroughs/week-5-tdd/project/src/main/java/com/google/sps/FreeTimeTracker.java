@@ -0,0 +1,215 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The free times of one attendee on day 0, kept up to date as their events are added and removed
+ * instead of being worked out again for every query.
+ *
+ * <p>Two sorted maps are kept: the attendee's busy times, counted so that identical events can be
+ * told apart, and the gaps between them. Adding a busy time only cuts the gaps it overlaps. Removing
+ * one only sweeps again over the busy times of the merged busy block it was part of, since no other
+ * gap can change. Both cost O(log n + k) for n busy times, where k is the number of gaps or busy
+ * times touched, which is small next to n for calendars with many short events.
+ *
+ * <p>A busy time of no length blocks no minute, but no meeting can run across it, so like the sweep
+ * in {@code FindMeetingQuery} it splits the free time it falls inside in two.
+ *
+ * <p>Writes must not run concurrently with each other. Reads never block: the free times are handed
+ * out as a packed list that is built on the first read after a write and then shared.
+ */
+final class FreeTimeTracker {
+  private static final int DAY_START = TimeRange.START_OF_DAY;
+  private static final int DAY_END = TimeRange.WHOLE_DAY.end();
+
+  // Each busy time, packed as in {@code TimeRangeList} so that they sort by start, with how many
+  // events take up that exact time.
+  private final NavigableMap<Long, Integer> busyTimes = new TreeMap<>();
+
+  // The start of each free time mapped to its exclusive end. Free times never overlap, and only
+  // touch where a busy time of no length splits them.
+  private final NavigableMap<Integer, Integer> freeTimes = new TreeMap<>();
+
+  // Built from {@code freeTimes} on the first read after a write.
+  private volatile TimeRangeList freeTimeList;
+
+  FreeTimeTracker() {
+    freeTimes.put(DAY_START, DAY_END);
+  }
+
+  /**
+   * Creates a tracker for someone with the given busy times, which must be sorted.
+   */
+  static FreeTimeTracker fromBusyTimes(TimeRangeList sortedBusyTimes) {
+    FreeTimeTracker tracker = new FreeTimeTracker();
+    tracker.freeTimes.clear();
+
+    int freeTimeStart = DAY_START;
+    for (int i = 0; i < sortedBusyTimes.size(); i++) {
+      int start = sortedBusyTimes.start(i);
+      int end = sortedBusyTimes.end(i);
+      tracker.busyTimes.merge(pack(start, end), 1, Integer::sum);
+      if (start > freeTimeStart) {
+        tracker.freeTimes.put(freeTimeStart, start);
+      }
+      freeTimeStart = Math.max(freeTimeStart, end);
+    }
+    if (freeTimeStart < DAY_END) {
+      tracker.freeTimes.put(freeTimeStart, DAY_END);
+    }
+    return tracker;
+  }
+
+  /**
+   * Returns whether the attendee has no busy times left.
+   */
+  boolean isEmpty() {
+    return busyTimes.isEmpty();
+  }
+
+  /**
+   * Returns the free times, sorted by start. The list is shared between callers and must not be
+   * changed.
+   */
+  TimeRangeList getFreeTimes() {
+    TimeRangeList list = freeTimeList;
+    if (list == null) {
+      synchronized (this) {
+        list = freeTimeList;
+        if (list == null) {
+          list = new TimeRangeList(freeTimes.size());
+          for (Map.Entry<Integer, Integer> freeTime : freeTimes.entrySet()) {
+            list.add(freeTime.getKey(), freeTime.getValue());
+          }
+          freeTimeList = list;
+        }
+      }
+    }
+    return list;
+  }
+
+  /**
+   * Marks the attendee busy from {@code start} to the exclusive {@code end}.
+   */
+  synchronized void add(int start, int end) {
+    busyTimes.merge(pack(start, end), 1, Integer::sum);
+
+    // Copy out the free times that overlap the new busy time first, then cut them. A busy time of
+    // no length only cuts a free time it falls strictly inside.
+    List<int[]> overlapping = new ArrayList<>();
+    Map.Entry<Integer, Integer> before = freeTimes.lowerEntry(start);
+    if (before != null && before.getValue() > start) {
+      overlapping.add(new int[] {before.getKey(), before.getValue()});
+    }
+    for (Map.Entry<Integer, Integer> freeTime : freeTimes.subMap(start, end).entrySet()) {
+      overlapping.add(new int[] {freeTime.getKey(), freeTime.getValue()});
+    }
+
+    for (int[] freeTime : overlapping) {
+      int freeStart = freeTime[0];
+      int freeEnd = freeTime[1];
+      freeTimes.remove(freeStart);
+      if (freeStart < start) {
+        freeTimes.put(freeStart, start);
+      }
+      if (freeEnd > end) {
+        freeTimes.put(end, freeEnd);
+      }
+    }
+    freeTimeList = null;
+  }
+
+  /**
+   * Removes one busy time from {@code start} to the exclusive {@code end}, returning whether there
+   * was one. The attendee stays busy wherever their other busy times cover.
+   */
+  synchronized boolean remove(int start, int end) {
+    long key = pack(start, end);
+    Integer count = busyTimes.get(key);
+    if (count == null) {
+      return false;
+    }
+
+    if (count == 1) {
+      busyTimes.remove(key);
+    } else {
+      busyTimes.put(key, count - 1);
+    }
+    if (end <= start) {
+      // Two free times that touch here were only split by busy times of no length at this time.
+      Map.Entry<Integer, Integer> freeBefore = freeTimes.lowerEntry(start);
+      if (count == 1 && freeBefore != null && freeBefore.getValue() == start
+          && freeTimes.containsKey(start)) {
+        freeTimes.put(freeBefore.getKey(), freeTimes.remove(start));
+        freeTimeList = null;
+      }
+      return true;
+    }
+
+    // The busy time lies inside one merged busy block, bounded by the free times on either side.
+    // Every busy time that makes up the block starts inside it, so sweeping over those is enough.
+    Map.Entry<Integer, Integer> freeBefore = freeTimes.lowerEntry(start);
+    Map.Entry<Integer, Integer> freeAfter = freeTimes.ceilingEntry(end);
+    int blockStart = freeBefore == null ? DAY_START : freeBefore.getValue();
+    int blockEnd = freeAfter == null ? DAY_END : freeAfter.getKey();
+
+    List<int[]> gaps = new ArrayList<>();
+    int freeTimeStart = blockStart;
+    for (long busyTime : busyTimes.subMap(pack(blockStart, 0), true, pack(blockEnd, 0), false)
+        .keySet()) {
+      int busyStart = (int) (busyTime >> 32);
+      int busyEnd = (int) busyTime;
+      if (busyStart > freeTimeStart) {
+        gaps.add(new int[] {freeTimeStart, busyStart});
+      }
+      freeTimeStart = Math.max(freeTimeStart, busyEnd);
+    }
+    if (freeTimeStart < blockEnd) {
+      gaps.add(new int[] {freeTimeStart, blockEnd});
+    }
+
+    // Join gaps at the edges of the block with the free times next to it, unless a busy time of no
+    // length at the edge keeps them apart.
+    if (!gaps.isEmpty()) {
+      int[] first = gaps.get(0);
+      if (first[0] == blockStart && freeBefore != null
+          && !busyTimes.containsKey(pack(blockStart, blockStart))) {
+        freeTimes.remove(freeBefore.getKey());
+        first[0] = freeBefore.getKey();
+      }
+      int[] last = gaps.get(gaps.size() - 1);
+      if (last[1] == blockEnd && freeAfter != null
+          && !busyTimes.containsKey(pack(blockEnd, blockEnd))) {
+        freeTimes.remove(freeAfter.getKey());
+        last[1] = freeAfter.getValue();
+      }
+    }
+    for (int[] gap : gaps) {
+      freeTimes.put(gap[0], gap[1]);
+    }
+    freeTimeList = null;
+    return true;
+  }
+
+  private static long pack(int start, int end) {
+    return ((long) start << 32) | (end & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An {@code EventRepository} that only keeps its events in memory, so they are lost when the app
+ * stops.
+ */
+public final class InMemoryEventRepository implements EventRepository {
+  private static final Comparator<Event> ORDER_BY_START = EventIntervalTree.ORDER_BY_START;
+
+  private final List<Event> events = new ArrayList<>();
+
+  /**
+   * Creates a repository holding the given events.
+   *
+   * @param events The events to start with. Must be non-null.
+   */
+  public InMemoryEventRepository(Collection<Event> events) {
+    if (events == null) {
+      throw new IllegalArgumentException("events cannot be null");
+    }
+    this.events.addAll(events);
+  }
+
+  @Override
+  public synchronized List<Event> getEvents() {
+    List<Event> sorted = new ArrayList<>(events);
+    Collections.sort(sorted, ORDER_BY_START);
+    return sorted;
+  }
+
+  @Override
+  public synchronized List<Event> findOverlapping(EpochRange range) {
+    List<Event> overlapping = new ArrayList<>();
+    for (Event event : events) {
+      if (event.getEpochRange().overlaps(range)) {
+        overlapping.add(event);
+      }
+    }
+    Collections.sort(overlapping, ORDER_BY_START);
+    return overlapping;
+  }
+
+  @Override
+  public synchronized List<Event> findByAttendee(String attendee) {
+    List<Event> attended = new ArrayList<>();
+    for (Event event : events) {
+      if (event.getAttendees().contains(attendee)) {
+        attended.add(event);
+      }
+    }
+    return attended;
+  }
+
+  @Override
+  public synchronized int size() {
+    return events.size();
+  }
+
+  @Override
+  public synchronized void add(Event event) {
+    events.add(event);
+  }
+
+  @Override
+  public synchronized boolean remove(Event event) {
+    return events.remove(event);
+  }
+
+  @Override
+  public void close() {}
+}
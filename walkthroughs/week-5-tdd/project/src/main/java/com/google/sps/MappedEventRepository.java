@@ -0,0 +1,575 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@code EventRepository} kept in an append-only log file on the local disk. Events are never
+ * rewritten: removing one appends a tombstone that points back at it.
+ *
+ * <p>Two index files sit next to the log. The start index ({@code <log>.starts}) lists the start,
+ * end and log offset of every live event sorted by start time, and the attendee index
+ * ({@code <log>.attendees}) lists the offsets of the events each attendee attends. Both record the
+ * log length they were written for. When they match the log, opening the repository only maps the
+ * index files and never reads the log. Otherwise the log is scanned once, a torn record left by a
+ * crash mid-append is cut off, the start index is sorted in one pass and both files are written
+ * again. They are also written when the repository is closed after the log has grown.
+ *
+ * <p>Events are decoded straight out of a read-only mapping of the log, so reading them doesn't
+ * copy the file through a heap buffer first. The mapping limits the log to 2 GiB.
+ */
+public final class MappedEventRepository implements EventRepository {
+  private static final int LOG_MAGIC = 0x45564c47; // "EVLG"
+  private static final int STARTS_MAGIC = 0x45565354; // "EVST"
+  private static final int ATTENDEES_MAGIC = 0x45564154; // "EVAT"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int LOG_HEADER_BYTES = 8;
+  // Each record is its payload length, a kind byte and the payload.
+  private static final int RECORD_HEADER_BYTES = 5;
+  private static final byte KIND_EVENT = 1;
+  private static final byte KIND_TOMBSTONE = 2;
+
+  // The magic, version, log length, longest duration and entry count of the start index.
+  private static final int STARTS_HEADER_BYTES = 28;
+  // The magic, version, log length and name count of the attendee index.
+  private static final int ATTENDEES_HEADER_BYTES = 20;
+
+  private final Path logPath;
+  private final Path startsPath;
+  private final Path attendeesPath;
+  private final FileChannel log;
+  private long logLength;
+  // Covers the first logLength bytes of the log, or null once an append has outgrown it.
+  private MappedByteBuffer mapped;
+
+  // The live events sorted by start time, as parallel arrays of their first size entries.
+  private long[] starts;
+  private long[] ends;
+  private long[] offsets;
+  private int size;
+  // No live event is longer than this, so overlap searches can start this far back.
+  private long maxDuration;
+
+  // The offsets of the live events each attendee attends, in log order.
+  private final Map<String, List<Long>> attendeeOffsets = new HashMap<>();
+
+  // Whether the index files are behind the log.
+  private boolean indexesStale;
+
+  private MappedEventRepository(Path logPath, FileChannel log) {
+    this.logPath = logPath;
+    this.startsPath = logPath.resolveSibling(logPath.getFileName() + ".starts");
+    this.attendeesPath = logPath.resolveSibling(logPath.getFileName() + ".attendees");
+    this.log = log;
+  }
+
+  /**
+   * Opens the repository kept in {@code logPath}, creating an empty one if the file doesn't exist.
+   *
+   * @param logPath The log file. Its index files are kept in the same directory.
+   * @throws IOException If the file can't be read or isn't an event log.
+   */
+  public static MappedEventRepository open(Path logPath) throws IOException {
+    FileChannel log = FileChannel.open(logPath,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    MappedEventRepository repository = new MappedEventRepository(logPath, log);
+    try {
+      repository.load();
+    } catch (IOException | RuntimeException e) {
+      log.close();
+      throw e;
+    }
+    return repository;
+  }
+
+  private void load() throws IOException {
+    logLength = log.size();
+    if (logLength == 0) {
+      ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+      header.putInt(LOG_MAGIC).putInt(FORMAT_VERSION).flip();
+      writeFully(header, 0);
+      log.force(false);
+      logLength = LOG_HEADER_BYTES;
+    } else {
+      checkLogSize(logLength);
+      ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+      if (log.read(header, 0) != LOG_HEADER_BYTES
+          || header.getInt(0) != LOG_MAGIC || header.getInt(4) != FORMAT_VERSION) {
+        throw new IOException("Not an event log: " + logPath);
+      }
+    }
+
+    boolean loaded;
+    try {
+      loaded = loadIndexes();
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      loaded = false;
+    }
+    if (!loaded) {
+      rebuildIndexes();
+      writeIndexes();
+    }
+  }
+
+  /**
+   * Loads the index files if they were written for the current log, returning whether they were.
+   *
+   * @throws BufferUnderflowException If an index file is shorter than its header says.
+   * @throws NegativeArraySizeException If a name in the attendee index has a corrupt length.
+   */
+  private boolean loadIndexes() throws IOException {
+    if (!Files.isRegularFile(startsPath) || !Files.isRegularFile(attendeesPath)) {
+      return false;
+    }
+
+    ByteBuffer startIndex = map(startsPath);
+    if (startIndex.capacity() < STARTS_HEADER_BYTES
+        || startIndex.getInt() != STARTS_MAGIC || startIndex.getInt() != FORMAT_VERSION
+        || startIndex.getLong() != logLength) {
+      return false;
+    }
+    long startIndexMaxDuration = startIndex.getLong();
+    int count = startIndex.getInt();
+    if (count < 0 || startIndex.remaining() != count * 3L * Long.BYTES) {
+      return false;
+    }
+
+    ByteBuffer attendeeIndex = map(attendeesPath);
+    if (attendeeIndex.capacity() < ATTENDEES_HEADER_BYTES
+        || attendeeIndex.getInt() != ATTENDEES_MAGIC || attendeeIndex.getInt() != FORMAT_VERSION
+        || attendeeIndex.getLong() != logLength) {
+      return false;
+    }
+
+    LongBuffer entries = startIndex.asLongBuffer();
+    starts = new long[Math.max(16, count)];
+    ends = new long[starts.length];
+    offsets = new long[starts.length];
+    for (int i = 0; i < count; i++) {
+      starts[i] = entries.get();
+      ends[i] = entries.get();
+      offsets[i] = entries.get();
+    }
+    size = count;
+    maxDuration = startIndexMaxDuration;
+
+    int names = attendeeIndex.getInt();
+    for (int i = 0; i < names; i++) {
+      String name = getString(attendeeIndex);
+      int attended = attendeeIndex.getInt();
+      List<Long> attendedOffsets = new ArrayList<>(attended);
+      for (int j = 0; j < attended; j++) {
+        attendedOffsets.add(attendeeIndex.getLong());
+      }
+      attendeeOffsets.put(name, attendedOffsets);
+    }
+    return true;
+  }
+
+  /**
+   * Rebuilds the indexes by scanning the whole log, cutting off a record that was only partly
+   * written.
+   */
+  private void rebuildIndexes() throws IOException {
+    ByteBuffer buffer = mapped();
+    long[] logOffsets = new long[16];
+    int count = 0;
+    Set<Long> removedOffsets = new HashSet<>();
+    long offset = LOG_HEADER_BYTES;
+    while (offset < logLength) {
+      if (logLength - offset < RECORD_HEADER_BYTES) {
+        break;
+      }
+      int length = buffer.getInt((int) offset);
+      byte kind = buffer.get((int) offset + 4);
+      if (length < 0 || logLength - offset - RECORD_HEADER_BYTES < length) {
+        break;
+      }
+      if (kind == KIND_EVENT) {
+        if (count == logOffsets.length) {
+          logOffsets = Arrays.copyOf(logOffsets, count * 2);
+        }
+        logOffsets[count++] = offset;
+      } else if (kind == KIND_TOMBSTONE) {
+        removedOffsets.add(buffer.getLong((int) offset + RECORD_HEADER_BYTES));
+      } else {
+        throw new IOException("Unknown record kind " + kind + " at offset " + offset);
+      }
+      offset += RECORD_HEADER_BYTES + length;
+    }
+    if (offset < logLength) {
+      log.truncate(offset);
+      logLength = offset;
+      mapped = null;
+    }
+
+    // Collect the live entries in log order, then sort them once by start. Events with the same
+    // start stay in log order, as they do when added one at a time.
+    long[] logStarts = new long[count - removedOffsets.size()];
+    long[] logEnds = new long[logStarts.length];
+    size = 0;
+    maxDuration = 0;
+    attendeeOffsets.clear();
+    long minStart = Long.MAX_VALUE;
+    long maxStart = Long.MIN_VALUE;
+    for (int i = 0; i < count; i++) {
+      long eventOffset = logOffsets[i];
+      if (removedOffsets.isEmpty() || !removedOffsets.contains(eventOffset)) {
+        Event event = readEvent(eventOffset);
+        EpochRange range = event.getEpochRange();
+        logStarts[size] = range.start();
+        logEnds[size] = range.end();
+        logOffsets[size++] = eventOffset;
+        minStart = Math.min(minStart, range.start());
+        maxStart = Math.max(maxStart, range.start());
+        maxDuration = Math.max(maxDuration, range.duration());
+        for (String attendee : event.getAttendees()) {
+          attendeeOffsets.computeIfAbsent(attendee, name -> new ArrayList<>()).add(eventOffset);
+        }
+      }
+    }
+
+    starts = new long[Math.max(16, size)];
+    ends = new long[starts.length];
+    offsets = new long[starts.length];
+    int[] order = sortedOrder(logStarts, size, minStart, maxStart);
+    for (int i = 0; i < size; i++) {
+      starts[i] = logStarts[order[i]];
+      ends[i] = logEnds[order[i]];
+      offsets[i] = logOffsets[order[i]];
+    }
+  }
+
+  private void writeIndexes() throws IOException {
+    ByteBuffer startIndex = ByteBuffer.allocate(STARTS_HEADER_BYTES + size * 3 * Long.BYTES);
+    startIndex.putInt(STARTS_MAGIC).putInt(FORMAT_VERSION).putLong(logLength)
+        .putLong(maxDuration).putInt(size);
+    for (int i = 0; i < size; i++) {
+      startIndex.putLong(starts[i]).putLong(ends[i]).putLong(offsets[i]);
+    }
+    replace(startsPath, startIndex.array());
+
+    int attendeeIndexBytes = ATTENDEES_HEADER_BYTES;
+    List<byte[]> names = new ArrayList<>(attendeeOffsets.size());
+    List<List<Long>> attended = new ArrayList<>(attendeeOffsets.size());
+    for (Map.Entry<String, List<Long>> entry : attendeeOffsets.entrySet()) {
+      byte[] name = entry.getKey().getBytes(UTF_8);
+      names.add(name);
+      attended.add(entry.getValue());
+      attendeeIndexBytes += Integer.BYTES + name.length + Integer.BYTES
+          + entry.getValue().size() * Long.BYTES;
+    }
+    ByteBuffer attendeeIndex = ByteBuffer.allocate(attendeeIndexBytes);
+    attendeeIndex.putInt(ATTENDEES_MAGIC).putInt(FORMAT_VERSION).putLong(logLength)
+        .putInt(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      attendeeIndex.putInt(names.get(i).length).put(names.get(i)).putInt(attended.get(i).size());
+      for (long offset : attended.get(i)) {
+        attendeeIndex.putLong(offset);
+      }
+    }
+    replace(attendeesPath, attendeeIndex.array());
+    indexesStale = false;
+  }
+
+  /**
+   * Returns the positions of the first {@code count} starts in ascending order, keeping equal
+   * starts in the order they are given in.
+   */
+  private static int[] sortedOrder(long[] starts, int count, long minStart, long maxStart) {
+    int[] order = new int[count];
+    if (count > 0 && maxStart - minStart >= 0 && maxStart - minStart < 1L << 32) {
+      // Pack each start with its position so that a primitive sort puts them in order.
+      long[] keys = new long[count];
+      for (int i = 0; i < count; i++) {
+        keys[i] = (starts[i] - minStart) << 31 | i;
+      }
+      Arrays.sort(keys);
+      for (int i = 0; i < count; i++) {
+        order[i] = (int) (keys[i] & Integer.MAX_VALUE);
+      }
+      return order;
+    }
+
+    Integer[] boxed = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      boxed[i] = i;
+    }
+    // The sort is stable, so equal starts keep their order.
+    Arrays.sort(boxed, Comparator.comparingLong(i -> starts[i]));
+    for (int i = 0; i < count; i++) {
+      order[i] = boxed[i];
+    }
+    return order;
+  }
+
+  @Override
+  public synchronized List<Event> getEvents() throws IOException {
+    List<Event> events = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      events.add(readEvent(offsets[i]));
+    }
+    return events;
+  }
+
+  @Override
+  public synchronized List<Event> findOverlapping(EpochRange range) throws IOException {
+    List<Event> events = new ArrayList<>();
+    for (int i = firstStartingAtOrAfter(range.start() - maxDuration);
+        i < size && starts[i] < Math.max(range.end(), range.start() + 1); i++) {
+      if (EpochRange.fromStartEnd(starts[i], ends[i], false).overlaps(range)) {
+        events.add(readEvent(offsets[i]));
+      }
+    }
+    return events;
+  }
+
+  @Override
+  public synchronized List<Event> findByAttendee(String attendee) throws IOException {
+    List<Long> attendedOffsets = attendeeOffsets.get(attendee);
+    if (attendedOffsets == null) {
+      return Collections.emptyList();
+    }
+    List<Event> events = new ArrayList<>(attendedOffsets.size());
+    for (long offset : attendedOffsets) {
+      events.add(readEvent(offset));
+    }
+    return events;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized void add(Event event) throws IOException {
+    List<byte[]> names = new ArrayList<>();
+    int length = Long.BYTES + 3 * Integer.BYTES;
+    byte[] title = event.getTitle().getBytes(UTF_8);
+    length += Integer.BYTES + title.length;
+    for (String attendee : event.getAttendees()) {
+      byte[] name = attendee.getBytes(UTF_8);
+      names.add(name);
+      length += Integer.BYTES + name.length;
+    }
+
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+    record.putInt(length).put(KIND_EVENT)
+        .putLong(event.getDay())
+        .putInt(event.getWhen().start())
+        .putInt(event.getWhen().duration())
+        .putInt(title.length).put(title)
+        .putInt(names.size());
+    for (byte[] name : names) {
+      record.putInt(name.length).put(name);
+    }
+    index(event, append(record));
+  }
+
+  @Override
+  public synchronized boolean remove(Event event) throws IOException {
+    long start = event.getEpochRange().start();
+    for (int i = firstStartingAtOrAfter(start); i < size && starts[i] == start; i++) {
+      long offset = offsets[i];
+      if (readEvent(offset).equals(event)) {
+        ByteBuffer tombstone = ByteBuffer.allocate(RECORD_HEADER_BYTES + Long.BYTES);
+        tombstone.putInt(Long.BYTES).put(KIND_TOMBSTONE).putLong(offset);
+        append(tombstone);
+        unindex(event, i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the indexes if the log has grown since they were last written, then closes the log.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!log.isOpen()) {
+      return;
+    }
+    try {
+      if (indexesStale) {
+        writeIndexes();
+      }
+    } finally {
+      log.close();
+      mapped = null;
+    }
+  }
+
+  /**
+   * Appends {@code record} to the log and flushes it to disk, returning the offset it was written
+   * at.
+   */
+  private long append(ByteBuffer record) throws IOException {
+    long offset = logLength;
+    checkLogSize(offset + record.capacity());
+    record.flip();
+    writeFully(record, offset);
+    log.force(false);
+    logLength += record.capacity();
+    mapped = null;
+    indexesStale = true;
+    return offset;
+  }
+
+  private void index(Event event, long offset) {
+    if (size == starts.length) {
+      int capacity = Math.max(16, size * 2);
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+    }
+    EpochRange range = event.getEpochRange();
+    // After every event with the same start, so that equal starts stay in log order.
+    int i = firstStartingAtOrAfter(range.start() + 1);
+    System.arraycopy(starts, i, starts, i + 1, size - i);
+    System.arraycopy(ends, i, ends, i + 1, size - i);
+    System.arraycopy(offsets, i, offsets, i + 1, size - i);
+    starts[i] = range.start();
+    ends[i] = range.end();
+    offsets[i] = offset;
+    size++;
+    maxDuration = Math.max(maxDuration, range.duration());
+
+    for (String attendee : event.getAttendees()) {
+      attendeeOffsets.computeIfAbsent(attendee, name -> new ArrayList<>()).add(offset);
+    }
+  }
+
+  private void unindex(Event event, int i) {
+    long offset = offsets[i];
+    System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+    System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+    System.arraycopy(offsets, i + 1, offsets, i, size - i - 1);
+    size--;
+
+    for (String attendee : event.getAttendees()) {
+      List<Long> attendedOffsets = attendeeOffsets.get(attendee);
+      attendedOffsets.remove(offset);
+      if (attendedOffsets.isEmpty()) {
+        attendeeOffsets.remove(attendee);
+      }
+    }
+  }
+
+  /**
+   * Returns the position of the first live event that starts at or after {@code start}.
+   */
+  private int firstStartingAtOrAfter(long start) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (starts[middle] < start) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private Event readEvent(long offset) throws IOException {
+    ByteBuffer record = mapped().duplicate();
+    record.position((int) offset);
+    record.getInt();
+    if (record.get() != KIND_EVENT) {
+      throw new IOException("No event at offset " + offset);
+    }
+    long day = record.getLong();
+    int start = record.getInt();
+    int duration = record.getInt();
+    String title = getString(record);
+    int attendeeCount = record.getInt();
+    List<String> attendees = new ArrayList<>(attendeeCount);
+    for (int i = 0; i < attendeeCount; i++) {
+      attendees.add(getString(record));
+    }
+    return new Event(title, day, TimeRange.fromStartDuration(start, duration), attendees);
+  }
+
+  private ByteBuffer mapped() throws IOException {
+    if (mapped == null) {
+      mapped = log.map(FileChannel.MapMode.READ_ONLY, 0, logLength);
+    }
+    return mapped;
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += log.write(buffer, position);
+    }
+  }
+
+  private static ByteBuffer map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /**
+   * Replaces the contents of {@code path} without leaving a half-written file behind.
+   */
+  private static void replace(Path path, byte[] contents) throws IOException {
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    Files.write(temporary, contents);
+    try {
+      Files.move(temporary, path,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void checkLogSize(long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Event logs are limited to " + Integer.MAX_VALUE + " bytes");
+    }
+  }
+}
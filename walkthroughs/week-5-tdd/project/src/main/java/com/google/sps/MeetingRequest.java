@@ -39,9 +39,30 @@ public final class MeetingRequest {
   // The duration of the meeting in minutes.
   private final long duration;
 
+  // The window to look for a time in, in minutes since the epoch. The end is exclusive. When the
+  // end is not after the start, the meeting is looked for on day 0 only.
+  private final long horizon_start;
+  private final long horizon_end;
+
+  // The most possible times to send back, earliest first. 0 sends back every possible time.
+  private int limit;
+
   public MeetingRequest(Collection<String> attendees, long duration) {
     this.duration = duration;
     this.attendees.addAll(attendees);
+    this.horizon_start = 0;
+    this.horizon_end = 0;
+  }
+
+  public MeetingRequest(Collection<String> attendees, long duration, EpochRange horizon) {
+    if (horizon == null || horizon.duration() <= 0) {
+      throw new IllegalArgumentException("horizon must be non-null and non-empty");
+    }
+
+    this.duration = duration;
+    this.attendees.addAll(attendees);
+    this.horizon_start = horizon.start();
+    this.horizon_end = horizon.end();
   }
 
   /**
@@ -58,6 +79,21 @@ public final class MeetingRequest {
     return Collections.unmodifiableCollection(optional_attendees);
   }
 
+  /**
+   * Returns the sorted ids of the required attendees who are in the global attendee dictionary.
+   * The others are in no event, so they are never busy.
+   */
+  int[] getAttendeeIds() {
+    return AttendeeDictionary.global().findAll(attendees);
+  }
+
+  /**
+   * Returns the sorted ids of the optional attendees who are in the global attendee dictionary.
+   */
+  int[] getOptionalAttendeeIds() {
+    return AttendeeDictionary.global().findAll(optional_attendees);
+  }
+
   /**
    * Adds one optional attendee for the meeting.
    */
@@ -73,4 +109,31 @@ public final class MeetingRequest {
   public long getDuration() {
     return duration;
   }
+
+  /**
+   * Returns the most possible times to look for, or 0 to look for all of them.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Sets the most possible times to look for. Only the earliest {@code limit} times are found, which
+   * is faster when they are early in the day. Use 0 to look for all of them.
+   */
+  public void setLimit(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit cannot be negative");
+    }
+    this.limit = limit;
+  }
+
+  /**
+   * Returns the window to look for a time in, or {@code null} if the meeting should be on day 0.
+   */
+  public EpochRange getHorizon() {
+    return horizon_end > horizon_start
+        ? EpochRange.fromStartEnd(horizon_start, horizon_end, false)
+        : null;
+  }
 }
@@ -0,0 +1,252 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of meeting query results in front of {@code FindMeetingQuery}. Requests with the
+ * same attendees, optional attendees, duration and limit share an entry, whatever order the
+ * attendees were given in. When the cache is full, the least recently used entry is evicted.
+ *
+ * <p>Every entry remembers the {@link AttendeeIndex#getVersion version} of each attendee it was
+ * computed for. An entry is only used while all of those versions are unchanged, so adding or
+ * removing an event only invalidates the entries of the people in that event.
+ *
+ * <p>Only single-day requests are cached; requests with a horizon are rejected.
+ */
+public final class QueryCache {
+  private final FindMeetingQuery findMeetingQuery;
+  private final AttendeeIndex attendeeIndex;
+  private final Map<Key, CachedResult> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Creates a cache for queries against {@code attendeeIndex}.
+   *
+   * @param findMeetingQuery The query to answer cache misses with. Must be non-null.
+   * @param attendeeIndex The index to answer queries against. Must be non-null.
+   * @param capacity The most results the cache holds. Must be positive.
+   */
+  public QueryCache(FindMeetingQuery findMeetingQuery, AttendeeIndex attendeeIndex, int capacity) {
+    if (findMeetingQuery == null) {
+      throw new IllegalArgumentException("findMeetingQuery cannot be null");
+    }
+
+    if (attendeeIndex == null) {
+      throw new IllegalArgumentException("attendeeIndex cannot be null");
+    }
+
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+
+    this.findMeetingQuery = findMeetingQuery;
+    this.attendeeIndex = attendeeIndex;
+    this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, /* accessOrder= */ true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+        if (size() > capacity) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the possible times for {@code request}, from the cache if a valid result is in it.
+   */
+  public Collection<TimeRange> query(MeetingRequest request) {
+    if (request.getHorizon() != null) {
+      throw new IllegalArgumentException("requests with a horizon are not cached");
+    }
+
+    Key key = new Key(request);
+    CachedResult entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+
+    if (entry != null) {
+      if (entry.isValid(key, attendeeIndex)) {
+        hits.incrementAndGet();
+        return entry.times;
+      }
+      invalidations.incrementAndGet();
+    }
+    misses.incrementAndGet();
+
+    // Read the versions before querying. If the index changes while the query runs, the entry is
+    // stored with the old versions and is treated as stale on its next lookup.
+    long[] versions = key.versions(attendeeIndex);
+    Collection<TimeRange> times = Collections.unmodifiableList(
+        new ArrayList<>(findMeetingQuery.query(attendeeIndex, request)));
+    synchronized (entries) {
+      entries.put(key, new CachedResult(times, versions));
+    }
+    return times;
+  }
+
+  /**
+   * Returns the counters of this cache since it was created.
+   */
+  public Stats getStats() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new Stats(hits.get(), misses.get(), evictions.get(), invalidations.get(), size);
+  }
+
+  /**
+   * A snapshot of the counters of a cache.
+   */
+  public static final class Stats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+
+    private Stats(long hits, long misses, long evictions, long invalidations, int size) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.invalidations = invalidations;
+      this.size = size;
+    }
+
+    /**
+     * Returns how many queries were answered from the cache.
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * Returns how many queries had to be computed, including ones whose entry was invalid.
+     */
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * Returns how many entries were dropped to make room for newer ones.
+     */
+    public long getEvictions() {
+      return evictions;
+    }
+
+    /**
+     * Returns how many entries were found but could not be used because an attendee's events had
+     * changed.
+     */
+    public long getInvalidations() {
+      return invalidations;
+    }
+
+    /**
+     * Returns how many entries the cache held.
+     */
+    public int getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * The canonical form of a request: its attendees and optional attendees, each sorted, its
+   * duration and its limit.
+   */
+  private static final class Key {
+    private final List<String> attendees;
+    private final List<String> optionalAttendees;
+    private final long duration;
+    private final int limit;
+
+    Key(MeetingRequest request) {
+      this.attendees = sorted(request.getAttendees());
+      this.optionalAttendees = sorted(request.getOptionalAttendees());
+      this.duration = request.getDuration();
+      this.limit = request.getLimit();
+    }
+
+    long[] versions(AttendeeIndex attendeeIndex) {
+      long[] versions = new long[attendees.size() + optionalAttendees.size()];
+      int i = 0;
+      for (String attendee : attendees) {
+        versions[i++] = attendeeIndex.getVersion(attendee);
+      }
+      for (String attendee : optionalAttendees) {
+        versions[i++] = attendeeIndex.getVersion(attendee);
+      }
+      return versions;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+
+      Key key = (Key) other;
+      return duration == key.duration && limit == key.limit && attendees.equals(key.attendees)
+          && optionalAttendees.equals(key.optionalAttendees);
+    }
+
+    @Override
+    public int hashCode() {
+      return ((attendees.hashCode() * 31 + optionalAttendees.hashCode()) * 31
+          + Long.hashCode(duration)) * 31 + limit;
+    }
+
+    private static List<String> sorted(Collection<String> people) {
+      List<String> sorted = new ArrayList<>(people);
+      Collections.sort(sorted);
+      return sorted;
+    }
+  }
+
+  private static final class CachedResult {
+    private final Collection<TimeRange> times;
+    private final long[] versions;
+
+    CachedResult(Collection<TimeRange> times, long[] versions) {
+      this.times = times;
+      this.versions = versions;
+    }
+
+    boolean isValid(Key key, AttendeeIndex attendeeIndex) {
+      long[] current = key.versions(attendeeIndex);
+      for (int i = 0; i < versions.length; i++) {
+        if (versions[i] != current[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
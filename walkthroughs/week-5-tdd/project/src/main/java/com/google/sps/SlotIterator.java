@@ -0,0 +1,108 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Finds the times of day where all of a group of guests are free for a meeting, earliest first, one
+ * at a time. The busy times of the guests are gathered once and grouped by the hour they start in,
+ * which takes one pass. An hour's busy times are only sorted when the sweep reaches that hour, so
+ * finding the first few times skips sorting the rest of the day. Sweeping the whole day costs no
+ * more than sorting every busy time at once.
+ */
+final class SlotIterator implements Iterator<TimeRange> {
+  private static final int BUCKET_MINUTES = 60;
+  private static final int BUCKETS = TimeRange.WHOLE_DAY.duration() / BUCKET_MINUTES;
+  private static final int DAY_END = TimeRange.WHOLE_DAY.end();
+
+  // Below this many busy times, grouping costs more than it saves, so they are all one bucket.
+  private static final int MIN_BUSY_TIMES_TO_GROUP = 256;
+
+  private final TimeRangeList busyTimes = new TimeRangeList();
+  private final int[] bucketStarts;
+  private final long meetingDuration;
+
+  // The next busy time to sweep over, and the end of the bucket it is in. Buckets are sorted as the
+  // sweep enters them.
+  private int position;
+  private int bucket = -1;
+  private int bucketEnd;
+
+  private int freeTimeStart = TimeRange.START_OF_DAY;
+  private boolean sweptWholeDay;
+  private TimeRange next;
+
+  SlotIterator(AttendeeIndex attendeeIndex, Collection<String> meetingGuests,
+      long meetingDuration) {
+    for (String meetingGuest : meetingGuests) {
+      busyTimes.addAll(attendeeIndex.getBusyTimeList(meetingGuest));
+    }
+    this.bucketStarts = busyTimes.size() < MIN_BUSY_TIMES_TO_GROUP
+        ? new int[] {0, busyTimes.size()}
+        : busyTimes.groupByStart(BUCKET_MINUTES, BUCKETS);
+    this.meetingDuration = meetingDuration;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null && !sweptWholeDay) {
+      next = findNext();
+    }
+    return next != null;
+  }
+
+  @Override
+  public TimeRange next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    TimeRange time = next;
+    next = null;
+    return time;
+  }
+
+  // Sweeps over the busy times until the next long enough gap, or the end of the day.
+  private TimeRange findNext() {
+    while (position < busyTimes.size()) {
+      while (position == bucketEnd) {
+        bucket++;
+        bucketEnd = bucketStarts[bucket + 1];
+        busyTimes.sort(position, bucketEnd);
+      }
+
+      int start = busyTimes.start(position);
+      int end = busyTimes.end(position);
+      position++;
+
+      int gapStart = freeTimeStart;
+      freeTimeStart = Math.max(freeTimeStart, end);
+      if (isLongEnough(gapStart, start)) {
+        return TimeRange.fromStartEnd(gapStart, start, false);
+      }
+    }
+
+    sweptWholeDay = true;
+    return isLongEnough(freeTimeStart, DAY_END)
+        ? TimeRange.fromStartEnd(freeTimeStart, DAY_END, false)
+        : null;
+  }
+
+  private boolean isLongEnough(int start, int end) {
+    return end > start && end - start >= meetingDuration;
+  }
+}
@@ -0,0 +1,279 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A growable list of time ranges stored as packed {@code long}s, with the start in the high 32 bits
+ * and the exclusive end in the low 32 bits. The scheduler works on these instead of lists of
+ * {@code TimeRange} so that its inner loops don't allocate an object per range, and sorting is a
+ * primitive sort that orders by start and then by end.
+ *
+ * <p>{@code TimeRange} objects are only made when a list is handed back through the public API
+ * with {@link #toTimeRanges}.
+ */
+final class TimeRangeList {
+  private static final long[] EMPTY = new long[0];
+
+  private long[] ranges;
+  private int size;
+
+  TimeRangeList() {
+    this.ranges = EMPTY;
+  }
+
+  TimeRangeList(int capacity) {
+    this.ranges = capacity == 0 ? EMPTY : new long[capacity];
+  }
+
+  /**
+   * Creates a list holding the given ranges, in the same order.
+   */
+  static TimeRangeList fromTimeRanges(Collection<TimeRange> timeRanges) {
+    TimeRangeList list = new TimeRangeList(timeRanges.size());
+    for (TimeRange range : timeRanges) {
+      list.add(range.start(), range.end());
+    }
+    return list;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int start(int index) {
+    return (int) (ranges[index] >> 32);
+  }
+
+  int end(int index) {
+    return (int) ranges[index];
+  }
+
+  /**
+   * Appends the range from {@code start} to the exclusive {@code end}.
+   */
+  void add(int start, int end) {
+    ensureCapacity(size + 1);
+    ranges[size++] = pack(start, end);
+  }
+
+  /**
+   * Appends every range of {@code other}.
+   */
+  void addAll(TimeRangeList other) {
+    ensureCapacity(size + other.size);
+    System.arraycopy(other.ranges, 0, ranges, size, other.size);
+    size += other.size;
+  }
+
+  /**
+   * Inserts the range from {@code start} to the exclusive {@code end} at {@code index}, moving the
+   * later ranges up by one.
+   */
+  void insert(int index, int start, int end) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("index " + index + " is outside of [0, " + size + "]");
+    }
+
+    ensureCapacity(size + 1);
+    System.arraycopy(ranges, index, ranges, index + 1, size - index);
+    ranges[index] = pack(start, end);
+    size++;
+  }
+
+  /**
+   * Inserts the range from {@code start} to the exclusive {@code end} where it belongs in a list
+   * that is already sorted.
+   */
+  void insertSorted(int start, int end) {
+    int index = Arrays.binarySearch(ranges, 0, size, pack(start, end));
+    insert(index < 0 ? -index - 1 : index, start, end);
+  }
+
+  /**
+   * Removes the range at {@code index}, moving the later ranges down by one.
+   */
+  void remove(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index " + index + " is outside of [0, " + size + ")");
+    }
+
+    System.arraycopy(ranges, index + 1, ranges, index, size - index - 1);
+    size--;
+  }
+
+  /**
+   * Removes the first range from {@code start} to the exclusive {@code end}, returning whether
+   * there was one.
+   */
+  boolean remove(int start, int end) {
+    long packed = pack(start, end);
+    for (int i = 0; i < size; i++) {
+      if (ranges[i] == packed) {
+        remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sorts the ranges by start, and ranges with the same start by end.
+   */
+  void sort() {
+    Arrays.sort(ranges, 0, size);
+  }
+
+  /**
+   * Returns the ranges of this list with overlapping and touching ranges combined. The list must be
+   * sorted.
+   */
+  TimeRangeList merged() {
+    TimeRangeList merged = new TimeRangeList(size);
+    for (int i = 0; i < size; i++) {
+      merged.addMerging(start(i), end(i));
+    }
+    return merged;
+  }
+
+  /**
+   * Returns the minutes covered by either list, as sorted ranges with overlapping and touching
+   * ranges combined. Both lists must be sorted and merged.
+   */
+  static TimeRangeList union(TimeRangeList first, TimeRangeList second) {
+    TimeRangeList union = new TimeRangeList(first.size + second.size);
+    int i = 0;
+    int j = 0;
+    while (i < first.size || j < second.size) {
+      if (j == second.size || (i < first.size && first.ranges[i] <= second.ranges[j])) {
+        union.addMerging(first.start(i), first.end(i));
+        i++;
+      } else {
+        union.addMerging(second.start(j), second.end(j));
+        j++;
+      }
+    }
+    return union;
+  }
+
+  /**
+   * Returns the minutes covered by both lists, as sorted ranges. Both lists must be sorted, and the
+   * ranges within each list must not overlap.
+   */
+  static TimeRangeList intersection(TimeRangeList first, TimeRangeList second) {
+    TimeRangeList intersection = new TimeRangeList();
+    int i = 0;
+    int j = 0;
+    while (i < first.size && j < second.size) {
+      int start = Math.max(first.start(i), second.start(j));
+      int end = Math.min(first.end(i), second.end(j));
+      if (start < end) {
+        intersection.add(start, end);
+      }
+
+      // Move past whichever range ends first, since it can't overlap anything further on.
+      if (first.end(i) < second.end(j)) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return intersection;
+  }
+
+  /**
+   * Sorts the ranges from index {@code from} up to the exclusive {@code to}, as {@link #sort} does.
+   */
+  void sort(int from, int to) {
+    Arrays.sort(ranges, from, to);
+  }
+
+  /**
+   * Groups the ranges by start into buckets of {@code bucketMinutes}, earliest bucket first, in one
+   * counting pass. The ranges within a bucket keep their order. Starts from the last bucket on all
+   * go in the last bucket.
+   *
+   * @return where each bucket begins, followed by the size of the list
+   */
+  int[] groupByStart(int bucketMinutes, int buckets) {
+    int[] bucketStarts = new int[buckets + 1];
+    for (int i = 0; i < size; i++) {
+      bucketStarts[bucketOf(start(i), bucketMinutes, buckets) + 1]++;
+    }
+    for (int bucket = 0; bucket < buckets; bucket++) {
+      bucketStarts[bucket + 1] += bucketStarts[bucket];
+    }
+
+    long[] grouped = new long[Math.max(size, 1)];
+    int[] next = Arrays.copyOf(bucketStarts, buckets);
+    for (int i = 0; i < size; i++) {
+      grouped[next[bucketOf(start(i), bucketMinutes, buckets)]++] = ranges[i];
+    }
+    ranges = grouped;
+    return bucketStarts;
+  }
+
+  private static int bucketOf(int start, int bucketMinutes, int buckets) {
+    return Math.min(Math.max(start, 0) / bucketMinutes, buckets - 1);
+  }
+
+  TimeRangeList copy() {
+    TimeRangeList copy = new TimeRangeList(size);
+    System.arraycopy(ranges, 0, copy.ranges, 0, size);
+    copy.size = size;
+    return copy;
+  }
+
+  /**
+   * Creates a {@code TimeRange} for every range in the list, in the same order.
+   */
+  List<TimeRange> toTimeRanges() {
+    List<TimeRange> timeRanges = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      timeRanges.add(TimeRange.fromStartEnd(start(i), end(i), false));
+    }
+    return timeRanges;
+  }
+
+  // Appends a range that starts no earlier than the last one, extending the last one instead if
+  // they overlap or touch.
+  private void addMerging(int start, int end) {
+    if (size > 0 && start <= end(size - 1)) {
+      if (end > end(size - 1)) {
+        ranges[size - 1] = pack(start(size - 1), end);
+      }
+    } else {
+      add(start, end);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > ranges.length) {
+      ranges = Arrays.copyOf(ranges, Math.max(capacity, Math.max(2 * ranges.length, 8)));
+    }
+  }
+
+  private static long pack(int start, int end) {
+    return ((long) start << 32) | (end & 0xFFFFFFFFL);
+  }
+}
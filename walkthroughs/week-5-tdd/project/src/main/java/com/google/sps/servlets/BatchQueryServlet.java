@@ -0,0 +1,110 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.CalendarJson;
+import com.google.sps.EpochRange;
+import com.google.sps.EventTimeline;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.MeetingRequest;
+import com.google.sps.TimeRange;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers a JSON array of meeting requests in one call. The response is a JSON array holding the
+ * possible times of each request, in the same order as the requests. Like {@code /query}, requests
+ * with a horizon are answered in minutes since the epoch, and a request with a negative limit makes
+ * the whole batch fail.
+ */
+@WebServlet("/query/batch")
+public class BatchQueryServlet extends HttpServlet {
+  private static final Type MEETING_REQUESTS = new TypeToken<List<MeetingRequest>>() {}.getType();
+
+  private AttendeeIndex attendeeIndex;
+  private EventTimeline eventTimeline;
+
+  @Override
+  public void init() {
+    attendeeIndex = CalendarContextListener.getAttendeeIndex(getServletContext());
+    eventTimeline = CalendarContextListener.getEventTimeline(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Gson gson = CalendarJson.GSON;
+
+    // Convert the JSON to a list of MeetingRequests.
+    List<MeetingRequest> meetingRequests;
+    try {
+      meetingRequests = gson.fromJson(request.getReader(), MEETING_REQUESTS);
+    } catch (JsonParseException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a JSON array of requests");
+      return;
+    }
+    if (meetingRequests == null || meetingRequests.contains(null)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a JSON array of requests");
+      return;
+    }
+
+    List<MeetingRequest> singleDayRequests = new ArrayList<>();
+    for (int i = 0; i < meetingRequests.size(); i++) {
+      MeetingRequest meetingRequest = meetingRequests.get(i);
+      if (meetingRequest.getLimit() < 0) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "limit of request " + i + " cannot be negative");
+        return;
+      }
+      if (meetingRequest.getHorizon() == null) {
+        singleDayRequests.add(meetingRequest);
+      }
+    }
+
+    // Find the possible meeting times of every single-day request against the same index.
+    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
+    Iterator<Collection<TimeRange>> singleDayAnswers =
+        findMeetingQuery.queryAll(attendeeIndex, singleDayRequests).iterator();
+
+    // Write the answers straight to the response, one after the other. Requests with a horizon may
+    // span many days, so they are answered from the timeline as they come up.
+    response.setContentType("application/json");
+    JsonWriter writer = gson.newJsonWriter(response.getWriter());
+    writer.beginArray();
+    for (MeetingRequest meetingRequest : meetingRequests) {
+      if (meetingRequest.getHorizon() != null) {
+        Collection<EpochRange> answer =
+            findMeetingQuery.queryHorizon(eventTimeline, meetingRequest);
+        CalendarJson.writeArray(writer, EpochRange.class, answer.iterator());
+      } else {
+        CalendarJson.writeArray(writer, TimeRange.class, singleDayAnswers.next().iterator());
+      }
+    }
+    writer.endArray();
+    writer.flush();
+  }
+}
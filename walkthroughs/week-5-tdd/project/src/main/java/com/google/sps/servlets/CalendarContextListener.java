@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.Event;
+import com.google.sps.EventRepository;
+import com.google.sps.EventTimeline;
+import com.google.sps.Events;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.InMemoryEventRepository;
+import com.google.sps.MappedEventRepository;
+import com.google.sps.QueryCache;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Builds the data structures shared by the calendar servlets once, when the app starts, and keeps
+ * them in the servlet context so that requests don't have to rebuild them.
+ *
+ * <p>The events come from an {@link EventRepository}. If the {@value #EVENT_LOG_PARAMETER} system
+ * property or context init parameter names a file, they are kept in a {@link MappedEventRepository}
+ * there, which starts out with the sample events when the file is new. Otherwise the sample events
+ * are only kept in memory.
+ */
+@WebListener
+public class CalendarContextListener implements ServletContextListener {
+  static final String EVENT_LOG_PARAMETER = "calendar.eventLog";
+
+  private static final String EVENT_REPOSITORY = EventRepository.class.getName();
+  private static final String ATTENDEE_INDEX = AttendeeIndex.class.getName();
+  private static final String EVENT_TIMELINE = EventTimeline.class.getName();
+  private static final String CALENDAR_EVENTS = CalendarEvents.class.getName();
+  private static final String QUERY_CACHE = QueryCache.class.getName();
+
+  // The most query results kept in memory at once.
+  private static final int QUERY_CACHE_CAPACITY = 1024;
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    ServletContext context = event.getServletContext();
+    EventRepository repository = openRepository(context);
+    Collection<Event> events;
+    try {
+      events = repository.getEvents();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read the events", e);
+    }
+    context.setAttribute(EVENT_REPOSITORY, repository);
+    AttendeeIndex attendeeIndex = AttendeeIndex.fromEvents(events);
+    context.setAttribute(ATTENDEE_INDEX, attendeeIndex);
+    EventTimeline eventTimeline = EventTimeline.fromEvents(events);
+    context.setAttribute(EVENT_TIMELINE, eventTimeline);
+    context.setAttribute(CALENDAR_EVENTS,
+        new CalendarEvents(repository, attendeeIndex, eventTimeline));
+    context.setAttribute(QUERY_CACHE,
+        new QueryCache(new FindMeetingQuery(), attendeeIndex, QUERY_CACHE_CAPACITY));
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    ServletContext context = event.getServletContext();
+    EventRepository repository = getEventRepository(context);
+    if (repository != null) {
+      try {
+        repository.close();
+      } catch (IOException e) {
+        context.log("Could not close the event repository", e);
+      }
+    }
+    context.removeAttribute(EVENT_REPOSITORY);
+    context.removeAttribute(ATTENDEE_INDEX);
+    context.removeAttribute(EVENT_TIMELINE);
+    context.removeAttribute(CALENDAR_EVENTS);
+    context.removeAttribute(QUERY_CACHE);
+  }
+
+  /**
+   * Opens the repository named by {@value #EVENT_LOG_PARAMETER}, or an in-memory one holding the
+   * sample events if it isn't set.
+   */
+  private static EventRepository openRepository(ServletContext context) {
+    String eventLog = System.getProperty(EVENT_LOG_PARAMETER);
+    if (eventLog == null) {
+      eventLog = context.getInitParameter(EVENT_LOG_PARAMETER);
+    }
+    if (eventLog == null || eventLog.isEmpty()) {
+      return new InMemoryEventRepository(Arrays.asList(Events.events));
+    }
+
+    try {
+      EventRepository repository = MappedEventRepository.open(Paths.get(eventLog));
+      if (repository.size() == 0) {
+        for (Event sample : Events.events) {
+          repository.add(sample);
+        }
+      }
+      return repository;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open the event log " + eventLog, e);
+    }
+  }
+
+  /**
+   * Returns the event repository of the app that {@code context} belongs to.
+   */
+  static EventRepository getEventRepository(ServletContext context) {
+    return (EventRepository) context.getAttribute(EVENT_REPOSITORY);
+  }
+
+  /**
+   * Returns the attendee index of the app that {@code context} belongs to.
+   */
+  static AttendeeIndex getAttendeeIndex(ServletContext context) {
+    return (AttendeeIndex) context.getAttribute(ATTENDEE_INDEX);
+  }
+
+  /**
+   * Returns the event timeline of the app that {@code context} belongs to.
+   */
+  static EventTimeline getEventTimeline(ServletContext context) {
+    return (EventTimeline) context.getAttribute(EVENT_TIMELINE);
+  }
+
+  /**
+   * Returns what changes the events of the app that {@code context} belongs to.
+   */
+  static CalendarEvents getCalendarEvents(ServletContext context) {
+    return (CalendarEvents) context.getAttribute(CALENDAR_EVENTS);
+  }
+
+  /**
+   * Returns the cache of single-day query results of the app that {@code context} belongs to.
+   */
+  static QueryCache getQueryCache(ServletContext context) {
+    return (QueryCache) context.getAttribute(QUERY_CACHE);
+  }
+}
@@ -0,0 +1,64 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.Event;
+import com.google.sps.EventRepository;
+import com.google.sps.EventTimeline;
+import java.io.IOException;
+
+/**
+ * The one place the events of the calendar are changed. Each change is kept in the repository first
+ * and then applied to the structures the servlets read, so the attendee index, and through it the
+ * free time trackers and the query cache, are updated in place rather than rebuilt.
+ */
+final class CalendarEvents {
+  private final EventRepository repository;
+  private final AttendeeIndex attendeeIndex;
+  private final EventTimeline eventTimeline;
+
+  CalendarEvents(
+      EventRepository repository, AttendeeIndex attendeeIndex, EventTimeline eventTimeline) {
+    this.repository = repository;
+    this.attendeeIndex = attendeeIndex;
+    this.eventTimeline = eventTimeline;
+  }
+
+  /**
+   * Adds {@code event} to the calendar.
+   *
+   * @throws IOException If the repository couldn't keep the event, in which case nothing changed.
+   */
+  synchronized void add(Event event) throws IOException {
+    repository.add(event);
+    attendeeIndex.add(event);
+    eventTimeline.add(event);
+  }
+
+  /**
+   * Removes one occurrence of {@code event} from the calendar, returning whether there was one.
+   *
+   * @throws IOException If the repository couldn't remove the event, in which case nothing changed.
+   */
+  synchronized boolean remove(Event event) throws IOException {
+    if (!repository.remove(event)) {
+      return false;
+    }
+    attendeeIndex.remove(event);
+    eventTimeline.remove(event);
+    return true;
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.CalendarJson;
+import com.google.sps.Event;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Changes the events of the calendar. A POST adds the event in its body and a DELETE removes one
+ * occurrence of it, both in the JSON form {@code /get-events} sends. Later queries see the change
+ * without rebuilding anything.
+ */
+@WebServlet("/events")
+public class EventsServlet extends HttpServlet {
+  private CalendarEvents calendarEvents;
+
+  @Override
+  public void init() {
+    calendarEvents = CalendarContextListener.getCalendarEvents(getServletContext());
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Event event = readEvent(request, response);
+    if (event == null) {
+      return;
+    }
+
+    calendarEvents.add(event);
+    response.setStatus(HttpServletResponse.SC_CREATED);
+  }
+
+  @Override
+  public void doDelete(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Event event = readEvent(request, response);
+    if (event == null) {
+      return;
+    }
+
+    if (!calendarEvents.remove(event)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "There is no such event");
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  /**
+   * Returns the event in the body of {@code request}, or sends a 400 and returns null if there
+   * isn't one.
+   */
+  private static Event readEvent(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    Event event;
+    try {
+      event = CalendarJson.GSON.fromJson(request.getReader(), Event.class);
+    } catch (JsonParseException | IllegalArgumentException e) {
+      event = null;
+    }
+    if (event == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a JSON event");
+    }
+    return event;
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.CalendarJson;
+import com.google.sps.Event;
+import com.google.sps.EventTimeline;
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The JSON of every event on a timeline, serialized once per version of the timeline and kept both
+ * plain and gzipped, with a strong ETag taken from a hash of the JSON.
+ */
+final class EventsSnapshot {
+  private final long version;
+  private final byte[] json;
+  private final byte[] gzippedJson;
+  private final String etag;
+  private final String gzippedEtag;
+
+  private EventsSnapshot(long version, byte[] json) {
+    this.version = version;
+    this.json = json;
+    this.gzippedJson = gzip(json);
+
+    // The gzipped bytes are a different representation, so they get their own strong tag.
+    String hash = sha256Hex(json);
+    this.etag = "\"" + hash + "\"";
+    this.gzippedEtag = "\"" + hash + "-gzip\"";
+  }
+
+  /**
+   * Serializes every event on {@code timeline}. The snapshot is tagged with the version the
+   * timeline had before the events were read, so a write that races with this only makes the
+   * snapshot look older than it is.
+   */
+  static EventsSnapshot of(EventTimeline timeline) {
+    long version = timeline.getVersion();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (JsonWriter writer = CalendarJson.GSON.newJsonWriter(
+        new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+      CalendarJson.writeArray(writer, Event.class, timeline.getEvents().iterator());
+    } catch (IOException e) {
+      // Writing to memory doesn't fail.
+      throw new UncheckedIOException(e);
+    }
+    return new EventsSnapshot(version, bytes.toByteArray());
+  }
+
+  /**
+   * Returns the version of the timeline these events were read from.
+   */
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the UTF-8 JSON of the events, gzipped or not. The array is shared and must not be
+   * changed.
+   */
+  byte[] getJson(boolean gzipped) {
+    return gzipped ? gzippedJson : json;
+  }
+
+  /**
+   * Returns the strong ETag, with its quotes, of the JSON gzipped or not.
+   */
+  String getEtag(boolean gzipped) {
+    return gzipped ? gzippedEtag : etag;
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+      out.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return gzipped.toByteArray();
+  }
+
+  private static String sha256Hex(byte[] bytes) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+
+    StringBuilder hex = new StringBuilder(2 * digest.length);
+    for (byte b : digest) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -14,23 +14,121 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.Events;
-import com.google.gson.Gson;
+import com.google.sps.CalendarJson;
+import com.google.sps.EpochRange;
+import com.google.sps.Event;
+import com.google.sps.EventTimeline;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
+import java.util.Collection;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Sends the events of the calendar. With {@code start} and {@code end} parameters, in minutes since
+ * the epoch with an exclusive end, only the events overlapping that window are sent. For events on
+ * day 0 these are the same as minutes of the day.
+ *
+ * <p>The whole calendar is served from an {@link EventsSnapshot} that is only rebuilt when the
+ * timeline changes. It is sent gzipped to clients that accept it, and clients that send the ETag of
+ * the version they already have get a 304 with no body.
+ */
 @WebServlet("/get-events")
 public class GetEventsServlet extends HttpServlet {
+  private EventTimeline eventTimeline;
+  private volatile EventsSnapshot snapshot;
+
+  @Override
+  public void init() {
+    eventTimeline = CalendarContextListener.getEventTimeline(getServletContext());
+  }
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
-    String jsonResponse = gson.toJson(Events.events);
+    String start = request.getParameter("start");
+    String end = request.getParameter("end");
+
+    if (start == null && end == null) {
+      sendSnapshot(request, response);
+      return;
+    }
 
-    // Send the JSON back as the response
+    EpochRange window;
+    try {
+      window = EpochRange.fromStartEnd(Long.parseLong(start), Long.parseLong(end), false);
+    } catch (NumberFormatException e) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "start and end must both be whole minutes");
+      return;
+    }
+    Collection<Event> events = eventTimeline.findOverlapping(window);
+
+    // Write the events straight to the response, one after the other, so that no copy of the
+    // whole response is built in memory.
     response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    JsonWriter writer = CalendarJson.GSON.newJsonWriter(response.getWriter());
+    CalendarJson.writeArray(writer, Event.class, events.iterator());
+    writer.flush();
+  }
+
+  private void sendSnapshot(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    // Two requests may both rebuild a stale snapshot at the same time. Either result is fine.
+    EventsSnapshot current = snapshot;
+    if (current == null || current.getVersion() != eventTimeline.getVersion()) {
+      current = EventsSnapshot.of(eventTimeline);
+      snapshot = current;
+    }
+
+    boolean gzipped = acceptsGzip(request.getHeader("Accept-Encoding"));
+    String etag = current.getEtag(gzipped);
+    response.setHeader("ETag", etag);
+    response.setHeader("Vary", "Accept-Encoding");
+    if (matchesEtag(request.getHeader("If-None-Match"), etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    byte[] json = current.getJson(gzipped);
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    if (gzipped) {
+      response.setHeader("Content-Encoding", "gzip");
+    }
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+
+  // Whether an Accept-Encoding header lists gzip without ruling it out with a q of 0.
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split("\\s*;\\s*");
+      if (parts[0].equalsIgnoreCase("gzip")) {
+        return parts.length == 1 || !parts[1].matches("(?i)q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  // Whether an If-None-Match header names {@code etag}. The comparison is the weak one the header
+  // calls for, so a tag a proxy has marked weak still matches.
+  private static boolean matchesEtag(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+        return true;
+      }
+    }
+    return false;
   }
 }
@@ -14,13 +14,16 @@
 
 package com.google.sps.servlets;
 
-import com.google.sps.Events;
+import com.google.sps.CalendarJson;
+import com.google.sps.EpochRange;
+import com.google.sps.EventTimeline;
 import com.google.sps.FindMeetingQuery;
 import com.google.sps.MeetingRequest;
+import com.google.sps.QueryCache;
 import com.google.sps.TimeRange;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collection;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -29,23 +32,39 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  private QueryCache queryCache;
+  private EventTimeline eventTimeline;
+
+  @Override
+  public void init() {
+    queryCache = CalendarContextListener.getQueryCache(getServletContext());
+    eventTimeline = CalendarContextListener.getEventTimeline(getServletContext());
+  }
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Gson gson = new Gson();
+    Gson gson = CalendarJson.GSON;
 
     // Convert the JSON to an instance of MeetingRequest.
     MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
+    if (meetingRequest.getLimit() < 0) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit cannot be negative");
+      return;
+    }
 
-    // Find the possible meeting times.
-    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
-
-    // Convert the times to JSON
-    String jsonResponse = gson.toJson(answer);
-
-    // Send the JSON back as the response
+    // Find the possible meeting times. Requests with a horizon may span many days, so they are
+    // answered in minutes since the epoch. Both kinds of range have the same JSON form. Single-day
+    // requests are answered from the cache when the same request was seen before.
     response.setContentType("application/json");
-    response.getWriter().println(jsonResponse);
+    JsonWriter writer = gson.newJsonWriter(response.getWriter());
+    if (meetingRequest.getHorizon() != null) {
+      FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
+      Collection<EpochRange> answer = findMeetingQuery.queryHorizon(eventTimeline, meetingRequest);
+      CalendarJson.writeArray(writer, EpochRange.class, answer.iterator());
+    } else {
+      Collection<TimeRange> answer = queryCache.query(meetingRequest);
+      CalendarJson.writeArray(writer, TimeRange.class, answer.iterator());
+    }
+    writer.flush();
   }
 }
@@ -89,13 +89,20 @@ function timeToString(totalMinutes) {
 }
 
 /**
- * Request for possible meeting times.
+ * Request for possible meeting times. The horizon is optional and given in
+ * minutes since the epoch; without it the server only looks at day 0. The
+ * limit is optional too; with it the server only sends back that many of the
+ * earliest times.
  */
 class MeetingRequest {
-  constructor(duration, attendees, optional_attendees) {
+  constructor(duration, attendees, optional_attendees, horizon_start,
+      horizon_end, limit) {
     this.duration = duration;
     this.attendees = attendees;
     this.optional_attendees = optional_attendees;
+    this.horizon_start = horizon_start;
+    this.horizon_end = horizon_end;
+    this.limit = limit;
   }
 }
 
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeDictionaryTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  @Test
+  public void idsAreDenseInOrderOfFirstSight() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+
+    Assert.assertEquals(0, dictionary.intern(PERSON_B));
+    Assert.assertEquals(1, dictionary.intern(PERSON_A));
+    Assert.assertEquals(0, dictionary.intern(PERSON_B));
+    Assert.assertEquals(PERSON_A, dictionary.nameOf(1));
+  }
+
+  @Test
+  public void findNeverAddsNames() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    dictionary.intern(PERSON_A);
+
+    Assert.assertEquals(AttendeeDictionary.NO_ID, dictionary.find(PERSON_B));
+    Assert.assertEquals(0, dictionary.find(PERSON_A));
+    Assert.assertArrayEquals(new int[] {0}, dictionary.findAll(Arrays.asList(PERSON_B, PERSON_A)));
+  }
+
+  @Test
+  public void internAllSortsAndDropsDuplicates() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    dictionary.intern(PERSON_A);
+    dictionary.intern(PERSON_B);
+
+    int[] ids = dictionary.internAll(Arrays.asList(PERSON_C, PERSON_B, PERSON_A, PERSON_B));
+
+    Assert.assertArrayEquals(new int[] {0, 1, 2}, ids);
+  }
+
+  @Test
+  public void growsPastInitialCapacity() {
+    AttendeeDictionary dictionary = new AttendeeDictionary();
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(i, dictionary.intern("Person " + i));
+    }
+
+    Assert.assertEquals("Person 99", dictionary.nameOf(99));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownId() {
+    new AttendeeDictionary().nameOf(0);
+  }
+}
@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class AttendeeIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final TimeRange TIME_0800_0830 = TimeRange.fromStartDuration(8 * 60, 30);
+  private static final TimeRange TIME_0900_1000 = TimeRange.fromStartDuration(9 * 60, 60);
+  private static final TimeRange TIME_1000_1030 = TimeRange.fromStartDuration(10 * 60, 30);
+
+  @Test
+  public void busyTimesAreSortedByStart() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TIME_1000_1030, Arrays.asList(PERSON_A)),
+        new Event("Event 2", TIME_0800_0830, Arrays.asList(PERSON_A, PERSON_B)));
+
+    AttendeeIndex index = AttendeeIndex.fromEvents(events);
+
+    Assert.assertEquals(
+        Arrays.asList(TIME_0800_0830, TIME_1000_1030), index.getBusyTimes(PERSON_A));
+    Assert.assertEquals(Arrays.asList(TIME_0800_0830), index.getBusyTimes(PERSON_B));
+  }
+
+  @Test
+  public void onlyRequestedAttendeesAreIndexed() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TIME_1000_1030, Arrays.asList(PERSON_A)),
+        new Event("Event 2", TIME_0800_0830, Arrays.asList(PERSON_A, PERSON_B)),
+        new Event("Event 3", TIME_0900_1000, Arrays.asList(PERSON_B)));
+
+    AttendeeIndex index = AttendeeIndex.fromEvents(events, Arrays.asList(PERSON_A, "Person C"));
+
+    Assert.assertEquals(
+        Arrays.asList(TIME_0800_0830, TIME_1000_1030), index.getBusyTimes(PERSON_A));
+    Assert.assertEquals(Collections.emptyList(), index.getBusyTimes(PERSON_B));
+    Assert.assertEquals(Collections.emptyList(), index.getBusyTimes("Person C"));
+  }
+
+  @Test
+  public void unknownAttendeeIsNeverBusy() {
+    AttendeeIndex index = AttendeeIndex.fromEvents(Collections.emptyList());
+
+    Assert.assertEquals(Collections.emptyList(), index.getBusyTimes(PERSON_A));
+  }
+
+  @Test
+  public void addKeepsBusyTimesSorted() {
+    AttendeeIndex index = AttendeeIndex.fromEvents(Arrays.asList(
+        new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A)),
+        new Event("Event 2", TIME_1000_1030, Arrays.asList(PERSON_A))));
+
+    index.add(new Event("Event 3", TIME_0900_1000, Arrays.asList(PERSON_A, PERSON_B)));
+
+    Assert.assertEquals(Arrays.asList(TIME_0800_0830, TIME_0900_1000, TIME_1000_1030),
+        index.getBusyTimes(PERSON_A));
+    Assert.assertEquals(Arrays.asList(TIME_0900_1000), index.getBusyTimes(PERSON_B));
+  }
+
+  @Test
+  public void removeOnlyDropsOneOccurrence() {
+    Event event = new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A, PERSON_B));
+    AttendeeIndex index = AttendeeIndex.fromEvents(Arrays.asList(
+        event, new Event("Event 2", TIME_0800_0830, Arrays.asList(PERSON_A))));
+
+    index.remove(event);
+
+    Assert.assertEquals(Arrays.asList(TIME_0800_0830), index.getBusyTimes(PERSON_A));
+    Assert.assertEquals(Collections.emptyList(), index.getBusyTimes(PERSON_B));
+  }
+
+  @Test
+  public void queryUsesIndexedBusyTimes() {
+    AttendeeIndex index = AttendeeIndex.fromEvents(Collections.emptyList());
+    index.add(new Event("Event 1", TIME_0900_1000, Arrays.asList(PERSON_A)));
+
+    Collection<TimeRange> actual =
+        new FindMeetingQuery().query(index, new MeetingRequest(Arrays.asList(PERSON_A), 30));
+    List<TimeRange> expected = Arrays.asList(
+        TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900_1000.start(), false),
+        TimeRange.fromStartEnd(TIME_0900_1000.end(), TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void eventsOnOtherDaysAreLeftOut() {
+    AttendeeIndex index = AttendeeIndex.fromEvents(
+        Arrays.asList(new Event("Event 1", 1, TIME_0800_0830, Arrays.asList(PERSON_A))));
+    index.add(new Event("Event 2", 2, TIME_0900_1000, Arrays.asList(PERSON_A)));
+
+    Assert.assertEquals(Collections.emptyList(), index.getBusyTimes(PERSON_A));
+  }
+
+  @Test
+  public void freeTimesFollowAddAndRemove() {
+    Event event = new Event("Event 2", TIME_0900_1000, Arrays.asList(PERSON_A));
+    AttendeeIndex index = AttendeeIndex.fromEvents(Arrays.asList(
+        new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A))));
+
+    index.add(event);
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 8 * 60, false),
+            TimeRange.fromStartEnd(8 * 60 + 30, 9 * 60, false),
+            TimeRange.fromStartEnd(10 * 60, TimeRange.END_OF_DAY, true)),
+        index.getFreeTimes(PERSON_A));
+
+    index.remove(event);
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 8 * 60, false),
+            TimeRange.fromStartEnd(8 * 60 + 30, TimeRange.END_OF_DAY, true)),
+        index.getFreeTimes(PERSON_A));
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), index.getFreeTimes(PERSON_B));
+  }
+
+  @Test
+  public void freeTimesReadBeforeAddAreKeptUpToDate() {
+    AttendeeIndex index = AttendeeIndex.fromEvents(Arrays.asList(
+        new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A))));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 8 * 60, false),
+            TimeRange.fromStartEnd(8 * 60 + 30, TimeRange.END_OF_DAY, true)),
+        index.getFreeTimes(PERSON_A));
+
+    index.add(new Event("Event 2", TIME_0900_1000, Arrays.asList(PERSON_A)));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 8 * 60, false),
+            TimeRange.fromStartEnd(8 * 60 + 30, 9 * 60, false),
+            TimeRange.fromStartEnd(10 * 60, TimeRange.END_OF_DAY, true)),
+        index.getFreeTimes(PERSON_A));
+  }
+}
@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Checks that the hand-written adapters match Gson's reflective JSON. */
+@RunWith(JUnit4.class)
+public final class CalendarJsonTest {
+  private static final Gson REFLECTIVE_GSON = new Gson();
+
+  private static final TimeRange TIME_0800_0830 = TimeRange.fromStartDuration(8 * 60, 30);
+
+  @Test
+  public void timeRangeMatchesReflection() {
+    Assert.assertEquals(
+        REFLECTIVE_GSON.toJson(TIME_0800_0830), CalendarJson.GSON.toJson(TIME_0800_0830));
+    Assert.assertEquals(TIME_0800_0830,
+        CalendarJson.GSON.fromJson(CalendarJson.GSON.toJson(TIME_0800_0830), TimeRange.class));
+  }
+
+  @Test
+  public void epochRangeMatchesReflection() {
+    EpochRange range = EpochRange.fromDay(18262, TIME_0800_0830);
+
+    Assert.assertEquals(REFLECTIVE_GSON.toJson(range), CalendarJson.GSON.toJson(range));
+    Assert.assertEquals(
+        range, CalendarJson.GSON.fromJson(CalendarJson.GSON.toJson(range), EpochRange.class));
+  }
+
+  @Test
+  public void eventMatchesReflection() {
+    Event event =
+        new Event("Event 1", 18262, TIME_0800_0830, Arrays.asList("Person A", "Person B"));
+
+    Assert.assertEquals(REFLECTIVE_GSON.toJson(event), CalendarJson.GSON.toJson(event));
+    Assert.assertEquals(
+        event, CalendarJson.GSON.fromJson(CalendarJson.GSON.toJson(event), Event.class));
+  }
+
+  @Test
+  public void unknownFieldsAreSkipped() {
+    String json = "{\"start\":480,\"duration\":30,\"label\":{\"x\":[1,2]}}";
+
+    Assert.assertEquals(TIME_0800_0830, CalendarJson.GSON.fromJson(json, TimeRange.class));
+  }
+
+  @Test
+  public void writeArrayPipesAStream() throws IOException {
+    List<TimeRange> ranges = Arrays.asList(TIME_0800_0830, TimeRange.WHOLE_DAY);
+    StringWriter json = new StringWriter();
+
+    try (JsonWriter writer = CalendarJson.GSON.newJsonWriter(json)) {
+      CalendarJson.writeArray(writer, TimeRange.class, ranges.stream().iterator());
+    }
+
+    Assert.assertEquals(REFLECTIVE_GSON.toJson(ranges), json.toString());
+  }
+}
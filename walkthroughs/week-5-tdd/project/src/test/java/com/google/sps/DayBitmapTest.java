@@ -0,0 +1,103 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class DayBitmapTest {
+  @Test
+  public void emptyBitmapHasNoRanges() {
+    Assert.assertEquals(Collections.emptyList(), new DayBitmap().toRanges(1));
+  }
+
+  @Test
+  public void rangesSurviveRoundTrip() {
+    // Crosses word boundaries at 64 and 128, and touches both ends of the day.
+    TimeRange morning = TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 70, false);
+    TimeRange midday = TimeRange.fromStartEnd(100, 200, false);
+    TimeRange evening = TimeRange.fromStartEnd(1400, TimeRange.END_OF_DAY, true);
+
+    DayBitmap bitmap = DayBitmap.fromRanges(Arrays.asList(evening, morning, midday));
+
+    Assert.assertEquals(Arrays.asList(morning, midday, evening), bitmap.toRanges(1));
+  }
+
+  @Test
+  public void overlappingAndTouchingRangesMerge() {
+    DayBitmap bitmap = DayBitmap.fromRanges(Arrays.asList(
+        TimeRange.fromStartEnd(60, 120, false), TimeRange.fromStartEnd(90, 130, false),
+        TimeRange.fromStartEnd(130, 140, false)));
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(60, 140, false)), bitmap.toRanges(1));
+  }
+
+  @Test
+  public void shortRunsAreLeftOut() {
+    DayBitmap bitmap = DayBitmap.fromRanges(Arrays.asList(
+        TimeRange.fromStartDuration(10, 29), TimeRange.fromStartDuration(100, 30)));
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartDuration(100, 30)), bitmap.toRanges(30));
+  }
+
+  @Test
+  public void flipOfEmptyBitmapIsWholeDay() {
+    DayBitmap bitmap = new DayBitmap();
+    bitmap.flip();
+
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), bitmap.toRanges(1));
+    Assert.assertTrue(bitmap.get(TimeRange.END_OF_DAY));
+    Assert.assertFalse(bitmap.get(TimeRange.WHOLE_DAY.end()));
+  }
+
+  @Test
+  public void orAndAnd() {
+    DayBitmap a = DayBitmap.fromRanges(Arrays.asList(TimeRange.fromStartEnd(0, 100, false)));
+    DayBitmap b = DayBitmap.fromRanges(Arrays.asList(TimeRange.fromStartEnd(50, 150, false)));
+
+    DayBitmap union = a.copy();
+    union.or(b);
+    DayBitmap intersection = a.copy();
+    intersection.and(b);
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(0, 150, false)), union.toRanges(1));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(50, 100, false)), intersection.toRanges(1));
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(0, 100, false)), a.toRanges(1));
+  }
+
+  @Test
+  public void rangeOfNoLengthSplitsRuns() {
+    // A split at the start of the day has nothing to break.
+    DayBitmap bitmap = DayBitmap.fromRanges(Arrays.asList(TimeRange.fromStartDuration(600, 0),
+        TimeRange.fromStartDuration(TimeRange.START_OF_DAY, 0)));
+    Assert.assertEquals(Collections.emptyList(), bitmap.toRanges(1));
+
+    bitmap.flip();
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 600, false),
+            TimeRange.fromStartEnd(600, TimeRange.END_OF_DAY, true)),
+        bitmap.toRanges(1));
+    Assert.assertNotEquals(new DayBitmap(), DayBitmap.fromRanges(
+        Arrays.asList(TimeRange.fromStartDuration(600, 0))));
+  }
+}
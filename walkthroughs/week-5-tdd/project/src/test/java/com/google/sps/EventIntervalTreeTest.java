@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventIntervalTreeTest {
+  private static final String PERSON_A = "Person A";
+
+  private static Event event(String title, int start, int duration) {
+    return new Event(title, TimeRange.fromStartDuration(start, duration), Arrays.asList(PERSON_A));
+  }
+
+  @Test
+  public void emptyTreeFindsNothing() {
+    EventIntervalTree tree = EventIntervalTree.fromEvents(Collections.emptyList());
+
+    Assert.assertEquals(Collections.emptyList(), tree.findAt(600));
+  }
+
+  @Test
+  public void stabbingFindsEveryEventAtMinute() {
+    Event longMorning = event("Long", 0, 12 * 60);
+    Event meeting = event("Meeting", 9 * 60, 60);
+    Event lunch = event("Lunch", 12 * 60, 60);
+    EventIntervalTree tree =
+        EventIntervalTree.fromEvents(Arrays.asList(lunch, meeting, longMorning));
+
+    Assert.assertEquals(Arrays.asList(longMorning, meeting), tree.findAt(9 * 60 + 30));
+    Assert.assertEquals(Arrays.asList(lunch), tree.findAt(12 * 60));
+    Assert.assertEquals(Collections.emptyList(), tree.findAt(13 * 60));
+  }
+
+  @Test
+  public void eventWithoutDurationOnRangeStartOverlaps() {
+    Event reminder = event("Reminder", 600, 0);
+    EventIntervalTree tree = EventIntervalTree.fromEvents(Arrays.asList(reminder));
+
+    Assert.assertEquals(
+        Arrays.asList(reminder), tree.findOverlapping(EpochRange.fromStartDuration(600, 30)));
+  }
+
+  @Test
+  public void matchesLinearScan() {
+    Random random = new Random(7);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      events.add(event("Event " + i, random.nextInt(1380), random.nextInt(240)));
+    }
+    EventIntervalTree tree = EventIntervalTree.fromEvents(events);
+
+    for (int i = 0; i < 200; i++) {
+      EpochRange range = EpochRange.fromStartDuration(random.nextInt(1440), random.nextInt(120));
+
+      List<Event> expected = new ArrayList<>();
+      for (Event event : tree.getEvents()) {
+        if (event.getEpochRange().overlaps(range)) {
+          expected.add(event);
+        }
+      }
+
+      Assert.assertEquals(expected, tree.findOverlapping(range));
+    }
+  }
+}
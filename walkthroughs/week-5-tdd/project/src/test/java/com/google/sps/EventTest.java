@@ -0,0 +1,71 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final TimeRange TIME_0800_0830 = TimeRange.fromStartDuration(8 * 60, 30);
+
+  @Test
+  public void attendeesAreASetOfNames() {
+    Event event = new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_B, PERSON_A, PERSON_B));
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList(PERSON_A, PERSON_B)), event.getAttendees());
+    Assert.assertTrue(event.getAttendees().contains(PERSON_A));
+    Assert.assertFalse(event.getAttendees().contains("Nobody at all"));
+  }
+
+  @Test
+  public void attendeeOrderDoesNotMatter() {
+    Event event = new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A, PERSON_B));
+    Event sameEvent = new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_B, PERSON_A));
+
+    Assert.assertEquals(event, sameEvent);
+  }
+
+  @Test
+  public void hasAnyAttendee() {
+    AttendeeDictionary dictionary = AttendeeDictionary.global();
+    Event event = new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A));
+
+    Assert.assertTrue(event.hasAnyAttendee(dictionary.findAll(Arrays.asList(PERSON_A, PERSON_B))));
+    Assert.assertFalse(event.hasAnyAttendee(dictionary.findAll(Arrays.asList(PERSON_B))));
+    Assert.assertFalse(event.hasAnyAttendee(new int[0]));
+  }
+
+  @Test
+  public void jsonHasAttendeeNames() {
+    Gson gson = new Gson();
+    Event event = new Event("Event 1", TIME_0800_0830, Collections.singletonList(PERSON_A));
+
+    String json = gson.toJson(event);
+
+    Assert.assertTrue(json, json.contains("\"attendees\":[\"" + PERSON_A + "\"]"));
+    Assert.assertEquals(event, gson.fromJson(json, Event.class));
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventTimelineTest {
+  private static final String PERSON_A = "Person A";
+
+  private static final long DAY = 18262;
+
+  private static final Event MONDAY_MORNING =
+      new Event("Monday", DAY, TimeRange.fromStartDuration(9 * 60, 60), Arrays.asList(PERSON_A));
+  private static final Event MONDAY_ALL_DAY =
+      new Event("All day", DAY, TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A));
+  private static final Event TUESDAY_MORNING = new Event(
+      "Tuesday", DAY + 1, TimeRange.fromStartDuration(9 * 60, 60), Arrays.asList(PERSON_A));
+
+  @Test
+  public void findsEventsInWindow() {
+    EventTimeline timeline =
+        EventTimeline.fromEvents(Arrays.asList(TUESDAY_MORNING, MONDAY_MORNING));
+
+    Assert.assertEquals(
+        Arrays.asList(MONDAY_MORNING), timeline.findOverlapping(EpochRange.wholeDay(DAY)));
+    Assert.assertEquals(Arrays.asList(MONDAY_MORNING, TUESDAY_MORNING),
+        timeline.findOverlapping(EpochRange.fromStartEnd(
+            EpochRange.wholeDay(DAY).start(), EpochRange.wholeDay(DAY + 1).end(), false)));
+    Assert.assertEquals(
+        Collections.emptyList(), timeline.findOverlapping(EpochRange.wholeDay(DAY + 2)));
+  }
+
+  @Test
+  public void findsLongEventStartingBeforeWindow() {
+    EventTimeline timeline =
+        EventTimeline.fromEvents(Arrays.asList(MONDAY_ALL_DAY, TUESDAY_MORNING));
+    EpochRange mondayEvening =
+        EpochRange.fromDay(DAY, TimeRange.fromStartDuration(20 * 60, 60));
+
+    Assert.assertEquals(Arrays.asList(MONDAY_ALL_DAY), timeline.findOverlapping(mondayEvening));
+  }
+
+  @Test
+  public void eventsEndingAtWindowStartDoNotOverlap() {
+    EventTimeline timeline = EventTimeline.fromEvents(Arrays.asList(MONDAY_ALL_DAY));
+
+    Assert.assertEquals(
+        Collections.emptyList(), timeline.findOverlapping(EpochRange.wholeDay(DAY + 1)));
+  }
+
+  @Test
+  public void addAndRemove() {
+    EventTimeline timeline = EventTimeline.fromEvents(Arrays.asList(TUESDAY_MORNING));
+    EpochRange bothDays = EpochRange.fromStartDuration(
+        EpochRange.wholeDay(DAY).start(), 2 * EpochRange.MINUTES_PER_DAY);
+
+    timeline.add(MONDAY_MORNING);
+    Assert.assertEquals(
+        Arrays.asList(MONDAY_MORNING, TUESDAY_MORNING), timeline.findOverlapping(bothDays));
+
+    timeline.remove(TUESDAY_MORNING);
+    Assert.assertEquals(Arrays.asList(MONDAY_MORNING), timeline.findOverlapping(bothDays));
+    Assert.assertEquals(1, timeline.size());
+  }
+}
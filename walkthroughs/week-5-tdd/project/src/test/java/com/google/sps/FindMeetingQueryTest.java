@@ -19,14 +19,20 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.junit.runners.JUnit4;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
 
-/** */
-@RunWith(JUnit4.class)
+/** Runs every case against each {@code FindMeetingQuery.Mode}, since they must agree. */
+@RunWith(Parameterized.class)
 public final class FindMeetingQueryTest {
   private static final Collection<Event> NO_EVENTS = Collections.emptySet();
   private static final Collection<String> NO_ATTENDEES = Collections.emptySet();
@@ -51,11 +57,24 @@ public final class FindMeetingQueryTest {
   private static final int DURATION_1_HOUR = 60;
   private static final int DURATION_2_HOUR = 120;
 
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> modes() {
+    List<Object[]> modes = new ArrayList<>();
+    for (FindMeetingQuery.Mode mode : FindMeetingQuery.Mode.values()) {
+      modes.add(new Object[] {mode});
+    }
+    return modes;
+  }
+
+  @Parameter
+  public FindMeetingQuery.Mode mode;
+
   private FindMeetingQuery query;
 
   @Before
   public void setUp() {
-    query = new FindMeetingQuery();
+    // A threshold of one guest makes the parallel mode split every request with more than one guest.
+    query = new FindMeetingQuery(mode, ForkJoinPool.commonPool(), 1);
   }
 
   @Test
@@ -96,6 +115,26 @@ public final class FindMeetingQueryTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void eventWithNoDurationSplitsRestriction() {
+    // Events  :           |
+    // Day     : |-----------------------------|
+    // Options : |--1------|-------2-----------|
+
+    Collection<Event> events = Arrays.asList(new Event("Event 1",
+        TimeRange.fromStartDuration(TIME_1000AM, 0), Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_1000AM, false),
+            TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, query.query(events, request));
+    request.setLimit(2);
+    Assert.assertEquals(expected, query.query(events, request));
+  }
+
   @Test
   public void everyAttendeeIsConsidered() {
     // Have each person have different events. We should see two options because each person has
@@ -236,6 +275,35 @@ public final class FindMeetingQueryTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void unsortedAndBackToBackEvents() {
+    // Events are given out of order, and two of them touch. The touching events should be treated
+    // as one busy block.
+    //
+    // Events  :       |--A--|--B--|     |--A--|
+    // Day     : |---------------------------------|
+    // Options : |--1--|           |--2--|     |--3--|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_1000AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)));
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            TimeRange.fromStartEnd(TIME_1000AM + DURATION_30_MINUTES, TimeRange.END_OF_DAY, true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
   @Test
   public void doubleBookedPeople() {
     // Have one person, but have them registered to attend two events at the same time.
@@ -436,4 +504,255 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void picksTimesWhereMostOptionalGuestsAreFree() {
+    // No time works for all optional guests, but B and C are both free from 9 to 10, while only D
+    // is free at any other time.
+    //
+    //           |--------B--------|     |--------B--------|
+    //           |--------C--------|     |--------C--------|
+    // Events  :                   |--D--|
+    // Day     : |-----------------------------------------|
+    // Options :                   |--1--|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_B, PERSON_C)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B, PERSON_C)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_D)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+    request.addOptionalAttendee(PERSON_D);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void optionalGuestWithOverlappingEventsIsCountedOnce() {
+    // B has two overlapping events. B must only count as one busy guest, so the time where C is
+    // busy and B is free is just as good as the time where B is busy and C is free. The two times
+    // stay apart, because a meeting across both would have neither B nor C.
+    //
+    // Events  : |--C--|--B--|---------B,C---------|
+    //                 |-B-|
+    // Day     : |-----------------------------------|
+    // Options : |--1--|--2--|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_C)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false),
+            Arrays.asList(PERSON_B)),
+        new Event("Event 4", TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_C, PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    request.addOptionalAttendee(PERSON_C);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void queryAllAnswersEachRequestInOrder() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B)));
+
+    List<MeetingRequest> requests = Arrays.asList(
+        new MeetingRequest(Arrays.asList(PERSON_B), DURATION_30_MINUTES),
+        new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES),
+        new MeetingRequest(Arrays.asList(PERSON_C), DURATION_30_MINUTES));
+
+    List<Collection<TimeRange>> actual = query.queryAll(events, requests);
+    List<Collection<TimeRange>> expected = Arrays.asList(
+        Arrays.asList(),
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false),
+            TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true)),
+        Arrays.asList(TimeRange.WHOLE_DAY));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void manyMandatoryGuests() {
+    // Have each of ten people busy for a different half hour from 8:00 AM, so that their busy times
+    // only form one block once everyone's are merged.
+    //
+    // Events  : Person 0 |--|
+    //           ...
+    //           Person 9                      |--|
+    // Day     : |---------------------------------------------|
+    // Options : |--1--|                            |----2-----|
+
+    List<Event> events = new ArrayList<>();
+    List<String> attendees = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      String person = "Person " + i;
+      attendees.add(person);
+      events.add(new Event("Event " + i,
+          TimeRange.fromStartDuration(TIME_0800AM + i * DURATION_30_MINUTES, DURATION_30_MINUTES),
+          Arrays.asList(person)));
+    }
+
+    MeetingRequest request = new MeetingRequest(attendees, DURATION_30_MINUTES);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0800AM + 10 * DURATION_30_MINUTES, TimeRange.END_OF_DAY,
+                true));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void limitReturnsEarliestTimes() {
+    // Events  :       |--A--|     |--B--|
+    // Day     : |-----------------------------|
+    // Options : |--1--|     |--2--|     |--3--|
+
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)));
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES);
+    request.setLimit(2);
+
+    Collection<TimeRange> actual = query.query(events, request);
+    Collection<TimeRange> expected =
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void limitedQueryIsPrefixOfFullQuery() {
+    Random random = new Random(11);
+    List<String> people = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      people.add("Person " + i);
+    }
+
+    for (int round = 0; round < 200; round++) {
+      List<Event> events = new ArrayList<>();
+      for (int i = 0; i < 12; i++) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.duration() - 120);
+        events.add(new Event("Event " + i,
+            TimeRange.fromStartDuration(start, 15 * (1 + random.nextInt(8))),
+            Arrays.asList(people.get(random.nextInt(people.size())))));
+      }
+      Collections.shuffle(people, random);
+      MeetingRequest request = new MeetingRequest(people.subList(0, 2), DURATION_60_MINUTES);
+      for (String optional : people.subList(2, 2 + random.nextInt(3))) {
+        request.addOptionalAttendee(optional);
+      }
+
+      List<TimeRange> all = new ArrayList<>(query.query(events, request));
+      request.setLimit(1 + random.nextInt(3));
+      Collection<TimeRange> limited = query.query(events, request);
+
+      Assert.assertEquals(all.subList(0, Math.min(all.size(), request.getLimit())), limited);
+    }
+  }
+
+  @Test
+  public void streamMatchesQuery() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+            Arrays.asList(PERSON_B)));
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    Assert.assertEquals(query.query(events, request),
+        query.stream(events, request).collect(Collectors.toList()));
+    Assert.assertEquals(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+        query.stream(events, request).findFirst().get());
+  }
+
+  @Test
+  public void streamIsNotEvaluatedUntilConsumed() {
+    List<Event> events = new ArrayList<>();
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    Stream<TimeRange> times = query.stream(events, request);
+
+    // The event is added after the stream was made, but before it is consumed.
+    events.add(new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+        Arrays.asList(PERSON_A)));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+            TimeRange.fromStartEnd(TIME_0830AM, TimeRange.END_OF_DAY, true)),
+        times.collect(Collectors.toList()));
+  }
+
+  @Test
+  public void horizonSpansSeveralDays() {
+    // A is busy all of the first day and the morning of the second, so the first option is on the
+    // afternoon of the second day. Events outside of the horizon are ignored.
+    long day = 18262;
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", day, TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A)),
+        new Event("Event 2", day + 1,
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_1100AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 3", day + 5, TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A)));
+    EpochRange horizon = EpochRange.fromStartEnd(
+        EpochRange.wholeDay(day).start(), EpochRange.wholeDay(day + 1).end(), false);
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+
+    Collection<EpochRange> actual = query.queryHorizon(EventTimeline.fromEvents(events), request);
+    Collection<EpochRange> expected = Arrays.asList(
+        EpochRange.fromStartEnd(EpochRange.wholeDay(day + 1).start() + TIME_1100AM, horizon.end(),
+            false));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void horizonFallsBackToMandatoryGuests() {
+    long day = 18262;
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", day,
+            TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", day, TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B)));
+    EpochRange horizon = EpochRange.wholeDay(day);
+
+    MeetingRequest request =
+        new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+    request.addOptionalAttendee(PERSON_B);
+
+    Collection<EpochRange> actual = query.queryHorizon(EventTimeline.fromEvents(events), request);
+    Collection<EpochRange> expected = Arrays.asList(
+        EpochRange.fromStartEnd(horizon.start() + TIME_0900AM, horizon.end(), false));
+
+    Assert.assertEquals(expected, actual);
+  }
 }
@@ -0,0 +1,136 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class FreeTimeTrackerTest {
+  private static final TimeRange TIME_0800_0900 = TimeRange.fromStartDuration(8 * 60, 60);
+  private static final TimeRange TIME_0830_1000 = TimeRange.fromStartDuration(8 * 60 + 30, 90);
+  private static final TimeRange TIME_1000_1100 = TimeRange.fromStartDuration(10 * 60, 60);
+
+  @Test
+  public void newTrackerIsFreeAllDay() {
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.WHOLE_DAY), new FreeTimeTracker().getFreeTimes().toTimeRanges());
+  }
+
+  @Test
+  public void addCutsFreeTimes() {
+    FreeTimeTracker tracker = new FreeTimeTracker();
+
+    tracker.add(TIME_0800_0900.start(), TIME_0800_0900.end());
+    tracker.add(TIME_1000_1100.start(), TIME_1000_1100.end());
+    tracker.add(TIME_0830_1000.start(), TIME_0830_1000.end());
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 8 * 60, false),
+            TimeRange.fromStartEnd(11 * 60, TimeRange.END_OF_DAY, true)),
+        tracker.getFreeTimes().toTimeRanges());
+  }
+
+  @Test
+  public void removeKeepsOverlappingEventsBusy() {
+    FreeTimeTracker tracker = new FreeTimeTracker();
+    tracker.add(TIME_0800_0900.start(), TIME_0800_0900.end());
+    tracker.add(TIME_0830_1000.start(), TIME_0830_1000.end());
+    tracker.add(TIME_0830_1000.start(), TIME_0830_1000.end());
+
+    Assert.assertTrue(tracker.remove(TIME_0830_1000.start(), TIME_0830_1000.end()));
+    Assert.assertTrue(tracker.remove(TIME_0800_0900.start(), TIME_0800_0900.end()));
+    Assert.assertFalse(tracker.remove(TIME_0800_0900.start(), TIME_0800_0900.end()));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 8 * 60 + 30, false),
+            TimeRange.fromStartEnd(10 * 60, TimeRange.END_OF_DAY, true)),
+        tracker.getFreeTimes().toTimeRanges());
+
+    Assert.assertTrue(tracker.remove(TIME_0830_1000.start(), TIME_0830_1000.end()));
+    Assert.assertTrue(tracker.isEmpty());
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), tracker.getFreeTimes().toTimeRanges());
+  }
+
+  @Test
+  public void busyTimeOfNoLengthSplitsFreeTime() {
+    FreeTimeTracker tracker = new FreeTimeTracker();
+    List<TimeRange> split = Arrays.asList(
+        TimeRange.fromStartEnd(TimeRange.START_OF_DAY, 10 * 60, false),
+        TimeRange.fromStartEnd(10 * 60, TimeRange.END_OF_DAY, true));
+
+    tracker.add(10 * 60, 10 * 60);
+    Assert.assertEquals(split, tracker.getFreeTimes().toTimeRanges());
+
+    tracker.add(TIME_1000_1100.start(), TIME_1000_1100.end());
+    Assert.assertTrue(tracker.remove(TIME_1000_1100.start(), TIME_1000_1100.end()));
+    Assert.assertEquals(split, tracker.getFreeTimes().toTimeRanges());
+
+    Assert.assertTrue(tracker.remove(10 * 60, 10 * 60));
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), tracker.getFreeTimes().toTimeRanges());
+  }
+
+  @Test
+  public void randomChangesMatchFreeTimesFromScratch() {
+    Random random = new Random(7);
+    FreeTimeTracker tracker = new FreeTimeTracker();
+    List<TimeRange> busyTimes = new ArrayList<>();
+
+    for (int step = 0; step < 2000; step++) {
+      if (busyTimes.isEmpty() || random.nextInt(3) > 0) {
+        int start = random.nextInt(TimeRange.WHOLE_DAY.end());
+        // Busy times of no length split free times, so make sure plenty of them come up.
+        int duration = random.nextInt(4) == 0
+            ? 0 : random.nextInt(Math.min(180, TimeRange.WHOLE_DAY.end() - start) + 1);
+        TimeRange busyTime = TimeRange.fromStartDuration(start, duration);
+        busyTimes.add(busyTime);
+        tracker.add(busyTime.start(), busyTime.end());
+      } else {
+        TimeRange busyTime = busyTimes.remove(random.nextInt(busyTimes.size()));
+        Assert.assertTrue(tracker.remove(busyTime.start(), busyTime.end()));
+      }
+
+      TimeRangeList sorted = TimeRangeList.fromTimeRanges(busyTimes);
+      sorted.sort();
+      List<TimeRange> expected = sweepFreeTimes(sorted);
+      Assert.assertEquals(
+          expected, FreeTimeTracker.fromBusyTimes(sorted).getFreeTimes().toTimeRanges());
+      Assert.assertEquals(expected, tracker.getFreeTimes().toTimeRanges());
+    }
+  }
+
+  /** Finds the free times between sorted busy times the way {@code FindMeetingQuery} does. */
+  private static List<TimeRange> sweepFreeTimes(TimeRangeList sortedBusyTimes) {
+    List<TimeRange> freeTimes = new ArrayList<>();
+    int freeTimeStart = TimeRange.START_OF_DAY;
+    for (int i = 0; i < sortedBusyTimes.size(); i++) {
+      if (sortedBusyTimes.start(i) > freeTimeStart) {
+        freeTimes.add(TimeRange.fromStartEnd(freeTimeStart, sortedBusyTimes.start(i), false));
+      }
+      freeTimeStart = Math.max(freeTimeStart, sortedBusyTimes.end(i));
+    }
+    if (freeTimeStart < TimeRange.WHOLE_DAY.end()) {
+      freeTimes.add(TimeRange.fromStartEnd(freeTimeStart, TimeRange.WHOLE_DAY.end(), false));
+    }
+    return freeTimes;
+  }
+}
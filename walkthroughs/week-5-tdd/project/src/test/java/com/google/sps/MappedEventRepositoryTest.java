@@ -0,0 +1,238 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class MappedEventRepositoryTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final long DAY = 18300;
+
+  private static final Event EVENT_1 = new Event("Event 1", DAY,
+      TimeRange.fromStartDuration(9 * 60, 60), Arrays.asList(PERSON_A));
+  private static final Event EVENT_2 = new Event("Event 2", DAY,
+      TimeRange.fromStartDuration(8 * 60, 30), Arrays.asList(PERSON_A, PERSON_B));
+  private static final Event EVENT_3 = new Event("Événement 3", DAY + 1,
+      TimeRange.fromStartDuration(0, 24 * 60), Arrays.asList(PERSON_B));
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path logPath;
+  private MappedEventRepository repository;
+
+  @Before
+  public void setUp() throws IOException {
+    logPath = folder.getRoot().toPath().resolve("events.log");
+    repository = MappedEventRepository.open(logPath);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    repository.close();
+  }
+
+  @Test
+  public void newRepositoryIsEmpty() throws IOException {
+    Assert.assertEquals(0, repository.size());
+    Assert.assertEquals(Collections.emptyList(), repository.getEvents());
+  }
+
+  @Test
+  public void eventsAreSortedByStart() throws IOException {
+    addAll();
+
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1, EVENT_3), repository.getEvents());
+  }
+
+  @Test
+  public void eventsSurviveReopening() throws IOException {
+    addAll();
+    reopen();
+
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1, EVENT_3), repository.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_2), repository.findByAttendee(PERSON_A));
+  }
+
+  @Test
+  public void removedEventsStayRemovedAfterReopening() throws IOException {
+    addAll();
+
+    Assert.assertTrue(repository.remove(EVENT_2));
+    Assert.assertFalse(repository.remove(EVENT_2));
+    reopen();
+
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_3), repository.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_3), repository.findByAttendee(PERSON_B));
+  }
+
+  @Test
+  public void findOverlappingUsesStartIndex() throws IOException {
+    addAll();
+
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1),
+        repository.findOverlapping(EpochRange.wholeDay(DAY)));
+    Assert.assertEquals(Arrays.asList(EVENT_1),
+        repository.findOverlapping(
+            EpochRange.fromDay(DAY, TimeRange.fromStartDuration(9 * 60 + 30, 0))));
+    Assert.assertEquals(Arrays.asList(EVENT_3),
+        repository.findOverlapping(
+            EpochRange.fromDay(DAY + 1, TimeRange.fromStartDuration(23 * 60, 60))));
+  }
+
+  @Test
+  public void unknownAttendeeHasNoEvents() throws IOException {
+    addAll();
+
+    Assert.assertEquals(Collections.emptyList(), repository.findByAttendee("Person C"));
+  }
+
+  @Test
+  public void reopeningWithCurrentIndexesDoesNotReadTheLog() throws IOException {
+    addAll();
+    repository.close();
+    // Breaks the kind of the first record without changing the log's length, which a scan of the
+    // log would reject.
+    try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+      log.write(ByteBuffer.wrap(new byte[] {0}), 8 + 4);
+    }
+    repository = MappedEventRepository.open(logPath);
+
+    Assert.assertEquals(3, repository.size());
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_3), repository.findByAttendee(PERSON_B));
+  }
+
+  @Test
+  public void missingIndexesAreRebuilt() throws IOException {
+    addAll();
+    repository.close();
+    Files.delete(logPath.resolveSibling("events.log.starts"));
+    repository = MappedEventRepository.open(logPath);
+
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1, EVENT_3), repository.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_3), repository.findByAttendee(PERSON_B));
+  }
+
+  @Test
+  public void corruptIndexesAreRebuilt() throws IOException {
+    addAll();
+    repository.close();
+    Path attendeeIndex = logPath.resolveSibling("events.log.attendees");
+    byte[] contents = Files.readAllBytes(attendeeIndex);
+    Files.write(attendeeIndex, Arrays.copyOf(contents, contents.length - 3));
+    repository = MappedEventRepository.open(logPath);
+
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_2), repository.findByAttendee(PERSON_A));
+  }
+
+  @Test
+  public void eventsWithTheSameStartKeepTheirOrder() throws IOException {
+    Event sameStart = new Event("Event 4", DAY,
+        TimeRange.fromStartDuration(8 * 60, 60), Arrays.asList(PERSON_B));
+    addAll();
+    repository.add(sameStart);
+    repository.add(EVENT_2);
+    reopen();
+
+    Assert.assertEquals(
+        Arrays.asList(EVENT_2, sameStart, EVENT_2, EVENT_1, EVENT_3), repository.getEvents());
+    Assert.assertTrue(repository.remove(EVENT_2));
+    Assert.assertEquals(
+        Arrays.asList(sameStart, EVENT_2, EVENT_1, EVENT_3), repository.getEvents());
+  }
+
+  @Test
+  public void eventsFarApartAreSortedAfterReopening() throws IOException {
+    // More than 2^32 minutes apart.
+    Event farFuture = new Event("Event 4", DAY + 4_000_000,
+        TimeRange.fromStartDuration(0, 60), Arrays.asList(PERSON_A));
+    repository.add(farFuture);
+    addAll();
+    reopen();
+
+    Assert.assertEquals(
+        Arrays.asList(EVENT_2, EVENT_1, EVENT_3, farFuture), repository.getEvents());
+  }
+
+  @Test
+  public void appendsAfterReopeningAreKept() throws IOException {
+    addAll();
+    reopen();
+    // Appends without closing, so the index files on disk are left describing a shorter log.
+    repository.remove(EVENT_1);
+    MappedEventRepository reopened = MappedEventRepository.open(logPath);
+    try {
+      Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_3), reopened.getEvents());
+      Assert.assertEquals(Arrays.asList(EVENT_2), reopened.findByAttendee(PERSON_A));
+    } finally {
+      reopened.close();
+    }
+  }
+
+  @Test
+  public void tornRecordIsCutOff() throws IOException {
+    addAll();
+    repository.close();
+    long length = Files.size(logPath);
+    try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+      log.truncate(length - 3);
+    }
+    repository = MappedEventRepository.open(logPath);
+
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1), repository.getEvents());
+
+    repository.add(EVENT_3);
+    reopen();
+    Assert.assertEquals(Arrays.asList(EVENT_2, EVENT_1, EVENT_3), repository.getEvents());
+  }
+
+  @Test(expected = IOException.class)
+  public void otherFilesAreRejected() throws IOException {
+    Path other = folder.newFile("other.log").toPath();
+    Files.write(other, "not an event log".getBytes("UTF-8"));
+
+    MappedEventRepository.open(other);
+  }
+
+  private void addAll() throws IOException {
+    repository.add(EVENT_1);
+    repository.add(EVENT_2);
+    repository.add(EVENT_3);
+  }
+
+  private void reopen() throws IOException {
+    repository.close();
+    repository = MappedEventRepository.open(logPath);
+  }
+}
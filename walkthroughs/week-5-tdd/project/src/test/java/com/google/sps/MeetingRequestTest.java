@@ -44,4 +44,28 @@ public final class MeetingRequestTest {
     int expected = 0;
     Assert.assertEquals(expected, actual);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void horizonIsOptional() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+    Assert.assertNull(request.getHorizon());
+
+    EpochRange horizon = EpochRange.wholeDay(18262);
+    request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, horizon);
+    Assert.assertEquals(horizon, request.getHorizon());
+  }
+
+  @Test
+  public void limitDefaultsToAllTimes() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR);
+    Assert.assertEquals(0, request.getLimit());
+
+    request.setLimit(3);
+    Assert.assertEquals(3, request.getLimit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeLimit() {
+    new MeetingRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR).setLimit(-1);
+  }
+}
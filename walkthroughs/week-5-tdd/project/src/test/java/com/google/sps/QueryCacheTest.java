@@ -0,0 +1,115 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class QueryCacheTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final TimeRange TIME_0800_0830 = TimeRange.fromStartDuration(8 * 60, 30);
+  private static final TimeRange TIME_0900_1000 = TimeRange.fromStartDuration(9 * 60, 60);
+
+  private static final int DURATION_30_MINUTES = 30;
+
+  private AttendeeIndex index;
+  private QueryCache cache;
+
+  @Before
+  public void setUp() {
+    index = AttendeeIndex.fromEvents(Arrays.asList(
+        new Event("Event 1", TIME_0800_0830, Arrays.asList(PERSON_A)),
+        new Event("Event 2", TIME_0900_1000, Arrays.asList(PERSON_B))));
+    cache = new QueryCache(new FindMeetingQuery(), index, 2);
+  }
+
+  @Test
+  public void sameAttendeesInAnyOrderHitTheCache() {
+    Collection<TimeRange> first = cache.query(
+        new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES));
+    Collection<TimeRange> second = cache.query(
+        new MeetingRequest(Arrays.asList(PERSON_B, PERSON_A), DURATION_30_MINUTES));
+
+    Assert.assertEquals(first, second);
+    Assert.assertEquals(1, cache.getStats().getHits());
+    Assert.assertEquals(1, cache.getStats().getMisses());
+  }
+
+  @Test
+  public void durationIsPartOfTheKey() {
+    cache.query(new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES));
+    cache.query(new MeetingRequest(Arrays.asList(PERSON_A), 2 * DURATION_30_MINUTES));
+
+    Assert.assertEquals(0, cache.getStats().getHits());
+    Assert.assertEquals(2, cache.getStats().getMisses());
+  }
+
+  @Test
+  public void changedAttendeeInvalidatesOnlyTheirResults() {
+    MeetingRequest requestA = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    MeetingRequest requestB = new MeetingRequest(Arrays.asList(PERSON_B), DURATION_30_MINUTES);
+    cache.query(requestA);
+    cache.query(requestB);
+
+    index.add(new Event("Event 3", TIME_0900_1000, Arrays.asList(PERSON_A, PERSON_C)));
+    Collection<TimeRange> actualA = cache.query(requestA);
+    cache.query(requestB);
+
+    Assert.assertEquals(new FindMeetingQuery().query(index, requestA), actualA);
+    Assert.assertEquals(1, cache.getStats().getInvalidations());
+    Assert.assertEquals(1, cache.getStats().getHits());
+  }
+
+  @Test
+  public void optionalAttendeesArePartOfTheKey() {
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+    cache.query(request);
+    cache.query(new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES));
+
+    index.add(new Event("Event 3", TIME_0800_0830, Arrays.asList(PERSON_B)));
+    cache.query(request);
+
+    Assert.assertEquals(0, cache.getStats().getHits());
+    Assert.assertEquals(1, cache.getStats().getInvalidations());
+  }
+
+  @Test
+  public void leastRecentlyUsedResultIsEvicted() {
+    MeetingRequest requestA = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_30_MINUTES);
+    MeetingRequest requestB = new MeetingRequest(Arrays.asList(PERSON_B), DURATION_30_MINUTES);
+    MeetingRequest requestC = new MeetingRequest(Arrays.asList(PERSON_C), DURATION_30_MINUTES);
+    cache.query(requestA);
+    cache.query(requestB);
+    cache.query(requestA);
+    cache.query(requestC);
+    cache.query(requestA);
+    cache.query(requestB);
+
+    Assert.assertEquals(2, cache.getStats().getEvictions());
+    Assert.assertEquals(2, cache.getStats().getHits());
+    Assert.assertEquals(2, cache.getStats().getSize());
+  }
+}
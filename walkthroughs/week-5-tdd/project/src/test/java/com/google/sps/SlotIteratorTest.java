@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class SlotIteratorTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  @Test
+  public void noBusyTimesIsOneWholeDay() {
+    SlotIterator slots = new SlotIterator(
+        AttendeeIndex.fromEvents(Collections.emptyList()), Arrays.asList(PERSON_A), 30);
+
+    Assert.assertEquals(TimeRange.WHOLE_DAY, slots.next());
+    Assert.assertFalse(slots.hasNext());
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void nextAfterLastSlot() {
+    SlotIterator slots = new SlotIterator(AttendeeIndex.fromEvents(Arrays.asList(
+        new Event("Event 1", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_A)))),
+        Arrays.asList(PERSON_A), 30);
+
+    slots.next();
+  }
+
+  @Test
+  public void manyBusyTimesMatchFullQuery() {
+    // Enough busy times that they are grouped by hour before the sweep.
+    Random random = new Random(3);
+    List<Event> events = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration());
+      int duration = Math.min(1 + random.nextInt(3), TimeRange.WHOLE_DAY.end() - start);
+      events.add(new Event("Event " + i, TimeRange.fromStartDuration(start, duration),
+          Arrays.asList(random.nextBoolean() ? PERSON_A : PERSON_B)));
+    }
+    AttendeeIndex index = AttendeeIndex.fromEvents(events);
+    List<String> guests = Arrays.asList(PERSON_A, PERSON_B);
+
+    List<TimeRange> slots = new ArrayList<>();
+    new SlotIterator(index, guests, 2).forEachRemaining(slots::add);
+
+    Collection<TimeRange> expected =
+        new FindMeetingQuery().query(index, new MeetingRequest(guests, 2));
+    Assert.assertEquals(expected, slots);
+  }
+}
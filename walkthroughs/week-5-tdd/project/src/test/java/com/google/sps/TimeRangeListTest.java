@@ -0,0 +1,138 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class TimeRangeListTest {
+  @Test
+  public void sortOrdersByStartThenEnd() {
+    TimeRangeList list = new TimeRangeList();
+    list.add(600, 660);
+    list.add(0, 30);
+    list.add(600, 630);
+
+    list.sort();
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(0, 30, false),
+        TimeRange.fromStartEnd(600, 630, false), TimeRange.fromStartEnd(600, 660, false)),
+        list.toTimeRanges());
+  }
+
+  @Test
+  public void insertAndRemoveInPlace() {
+    TimeRangeList list = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(0, 30, false), TimeRange.fromStartEnd(120, 150, false)));
+
+    list.insertSorted(60, 90);
+    Assert.assertEquals(3, list.size());
+    Assert.assertEquals(60, list.start(1));
+    Assert.assertEquals(90, list.end(1));
+
+    Assert.assertTrue(list.remove(0, 30));
+    Assert.assertFalse(list.remove(0, 30));
+    list.remove(1);
+
+    Assert.assertEquals(Arrays.asList(TimeRange.fromStartEnd(60, 90, false)), list.toTimeRanges());
+  }
+
+  @Test
+  public void growsPastInitialCapacity() {
+    TimeRangeList list = new TimeRangeList(1);
+    for (int i = 0; i < 100; i++) {
+      list.add(i, i + 1);
+    }
+    TimeRangeList other = list.copy();
+    list.addAll(other);
+
+    Assert.assertEquals(200, list.size());
+    Assert.assertEquals(99, list.start(199));
+    Assert.assertEquals(100, other.size());
+  }
+
+  @Test
+  public void mergedCombinesOverlappingAndTouchingRanges() {
+    TimeRangeList list = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(0, 30, false),
+        TimeRange.fromStartEnd(10, 20, false),
+        TimeRange.fromStartEnd(30, 40, false),
+        TimeRange.fromStartEnd(50, 60, false)));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 40, false), TimeRange.fromStartEnd(50, 60, false)),
+        list.merged().toTimeRanges());
+  }
+
+  @Test
+  public void unionOfMergedLists() {
+    TimeRangeList first = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(0, 10, false), TimeRange.fromStartEnd(40, 50, false)));
+    TimeRangeList second = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(5, 20, false), TimeRange.fromStartEnd(60, 70, false)));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(0, 20, false), TimeRange.fromStartEnd(40, 50, false),
+            TimeRange.fromStartEnd(60, 70, false)),
+        TimeRangeList.union(first, second).toTimeRanges());
+  }
+
+  @Test
+  public void intersectionOfSortedLists() {
+    TimeRangeList first = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(0, 30, false), TimeRange.fromStartEnd(40, 100, false)));
+    TimeRangeList second = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(20, 50, false), TimeRange.fromStartEnd(60, 70, false),
+        TimeRange.fromStartEnd(100, 110, false)));
+
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(20, 30, false), TimeRange.fromStartEnd(40, 50, false),
+            TimeRange.fromStartEnd(60, 70, false)),
+        TimeRangeList.intersection(first, second).toTimeRanges());
+  }
+
+  @Test
+  public void groupByStartKeepsOrderWithinBuckets() {
+    TimeRangeList list = TimeRangeList.fromTimeRanges(Arrays.asList(
+        TimeRange.fromStartEnd(70, 80, false),
+        TimeRange.fromStartEnd(10, 20, false),
+        TimeRange.fromStartEnd(200, 210, false),
+        TimeRange.fromStartEnd(5, 20, false)));
+
+    int[] bucketStarts = list.groupByStart(60, 3);
+
+    Assert.assertArrayEquals(new int[] {0, 2, 3, 4}, bucketStarts);
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(10, 20, false), TimeRange.fromStartEnd(5, 20, false),
+            TimeRange.fromStartEnd(70, 80, false), TimeRange.fromStartEnd(200, 210, false)),
+        list.toTimeRanges());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void removeOutOfBounds() {
+    new TimeRangeList().remove(0);
+  }
+
+  @Test
+  public void emptyListHasNoTimeRanges() {
+    Assert.assertEquals(Collections.emptyList(), new TimeRangeList().toTimeRanges());
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AttendeeIndex;
+import com.google.sps.Event;
+import com.google.sps.EventTimeline;
+import com.google.sps.FindMeetingQuery;
+import com.google.sps.InMemoryEventRepository;
+import com.google.sps.MeetingRequest;
+import com.google.sps.QueryCache;
+import com.google.sps.TimeRange;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CalendarEventsTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final Event EVENT_1 = new Event(
+      "Event 1", TimeRange.fromStartDuration(8 * 60, 30), Arrays.asList(PERSON_A));
+  private static final Event EVENT_2 = new Event(
+      "Event 2", TimeRange.fromStartDuration(9 * 60, 60), Arrays.asList(PERSON_A, PERSON_B));
+
+  private static final MeetingRequest REQUEST_A =
+      new MeetingRequest(Arrays.asList(PERSON_A), 30);
+  private static final MeetingRequest REQUEST_B =
+      new MeetingRequest(Arrays.asList(PERSON_B), 30);
+
+  private InMemoryEventRepository repository;
+  private AttendeeIndex attendeeIndex;
+  private EventTimeline eventTimeline;
+  private QueryCache queryCache;
+  private CalendarEvents calendarEvents;
+
+  @Before
+  public void setUp() {
+    List<Event> events = Arrays.asList(EVENT_1);
+    repository = new InMemoryEventRepository(events);
+    attendeeIndex = AttendeeIndex.fromEvents(events);
+    eventTimeline = EventTimeline.fromEvents(events);
+    queryCache = new QueryCache(new FindMeetingQuery(), attendeeIndex, 16);
+    calendarEvents = new CalendarEvents(repository, attendeeIndex, eventTimeline);
+  }
+
+  @Test
+  public void addedEventReachesEveryStructure() throws IOException {
+    queryCache.query(REQUEST_A);
+    long timelineVersion = eventTimeline.getVersion();
+
+    calendarEvents.add(EVENT_2);
+
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_2), repository.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_1, EVENT_2), eventTimeline.getEvents());
+    Assert.assertNotEquals(timelineVersion, eventTimeline.getVersion());
+    Assert.assertEquals(
+        AttendeeIndex.fromEvents(Arrays.asList(EVENT_1, EVENT_2)).getBusyTimes(PERSON_A),
+        attendeeIndex.getBusyTimes(PERSON_A));
+    Assert.assertEquals(new FindMeetingQuery().query(Arrays.asList(EVENT_1, EVENT_2), REQUEST_A),
+        queryCache.query(REQUEST_A));
+    Assert.assertEquals(1, queryCache.getStats().getInvalidations());
+  }
+
+  @Test
+  public void removedEventLeavesEveryStructure() throws IOException {
+    calendarEvents.add(EVENT_2);
+    queryCache.query(REQUEST_B);
+
+    Assert.assertTrue(calendarEvents.remove(EVENT_2));
+
+    Assert.assertEquals(Arrays.asList(EVENT_1), repository.getEvents());
+    Assert.assertEquals(Arrays.asList(EVENT_1), eventTimeline.getEvents());
+    Assert.assertTrue(attendeeIndex.getBusyTimes(PERSON_B).isEmpty());
+    Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), queryCache.query(REQUEST_B));
+  }
+
+  @Test
+  public void removingAMissingEventChangesNothing() throws IOException {
+    long timelineVersion = eventTimeline.getVersion();
+    long version = attendeeIndex.getVersion(PERSON_A);
+
+    Assert.assertFalse(calendarEvents.remove(EVENT_2));
+
+    Assert.assertEquals(timelineVersion, eventTimeline.getVersion());
+    Assert.assertEquals(version, attendeeIndex.getVersion(PERSON_A));
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.CalendarJson;
+import com.google.sps.Event;
+import com.google.sps.EventTimeline;
+import com.google.sps.TimeRange;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventsSnapshotTest {
+  private static final Event EVENT_1 = new Event(
+      "Event 1", TimeRange.fromStartDuration(8 * 60, 30), Arrays.asList("Person A"));
+  private static final Event EVENT_2 = new Event(
+      "Event 2", TimeRange.fromStartDuration(9 * 60, 30), Arrays.asList("Person B"));
+
+  @Test
+  public void jsonIsTheEventsOfTheTimeline() {
+    EventTimeline timeline = EventTimeline.fromEvents(Arrays.asList(EVENT_1, EVENT_2));
+
+    EventsSnapshot snapshot = EventsSnapshot.of(timeline);
+
+    Assert.assertEquals(CalendarJson.GSON.toJson(timeline.getEvents()),
+        new String(snapshot.getJson(false), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void gzippedJsonIsTheSameJson() throws IOException {
+    EventsSnapshot snapshot =
+        EventsSnapshot.of(EventTimeline.fromEvents(Arrays.asList(EVENT_1, EVENT_2)));
+
+    Assert.assertArrayEquals(snapshot.getJson(false), gunzip(snapshot.getJson(true)));
+    Assert.assertNotEquals(snapshot.getEtag(false), snapshot.getEtag(true));
+  }
+
+  @Test
+  public void etagFollowsTheEvents() {
+    EventTimeline timeline = EventTimeline.fromEvents(Arrays.asList(EVENT_1));
+    EventsSnapshot before = EventsSnapshot.of(timeline);
+
+    timeline.add(EVENT_2);
+    EventsSnapshot added = EventsSnapshot.of(timeline);
+    timeline.remove(EVENT_2);
+    EventsSnapshot removed = EventsSnapshot.of(timeline);
+
+    Assert.assertNotEquals(before.getEtag(false), added.getEtag(false));
+    Assert.assertEquals(before.getEtag(false), removed.getEtag(false));
+    Assert.assertNotEquals(before.getVersion(), removed.getVersion());
+  }
+
+  private static byte[] gunzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      byte[] buffer = new byte[4096];
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+        out.write(buffer, 0, read);
+      }
+    }
+    return out.toByteArray();
+  }
+}